@@ -52,6 +52,7 @@ import com.maddyhome.idea.vim.key.BranchNode;
 import com.maddyhome.idea.vim.key.CommandNode;
 import com.maddyhome.idea.vim.key.KeyMapping;
 import com.maddyhome.idea.vim.key.MappingInfo;
+import com.maddyhome.idea.vim.key.MappingNode;
 import com.maddyhome.idea.vim.key.Node;
 import com.maddyhome.idea.vim.option.Options;
 import org.jetbrains.annotations.NotNull;
@@ -266,31 +267,34 @@ public class KeyHandler {
     final CommandState commandState = CommandState.getInstance(editor);
     commandState.stopMappingTimer();
 
-    final List<KeyStroke> mappingKeys = commandState.getMappingKeys();
-    final List<KeyStroke> fromKeys = new ArrayList<KeyStroke>(mappingKeys);
-    fromKeys.add(key);
-
     final MappingMode mappingMode = commandState.getMappingMode();
     if (MappingMode.NVO.contains(mappingMode) && (state != State.NEW_COMMAND || currentArg != Argument.Type.NONE)) {
       return false;
     }
 
+    final List<KeyStroke> mappingKeys = commandState.getMappingKeys();
     final KeyMapping mapping = VimPlugin.getKey().getKeyMapping(mappingMode);
-    final MappingInfo currentMappingInfo = mapping.get(fromKeys);
-    final MappingInfo prevMappingInfo = mapping.get(mappingKeys);
+    final MappingNode currentNode = commandState.getMappingNode();
+    final MappingNode prevNode = currentNode != null && !mappingKeys.isEmpty() ? currentNode : mapping.getRoot();
+    final MappingNode node = prevNode.getChild(key);
+    final MappingInfo currentMappingInfo = node != null ? node.getMappingInfo() : null;
+    final MappingInfo prevMappingInfo = prevNode.getMappingInfo();
     final MappingInfo mappingInfo = currentMappingInfo != null ? currentMappingInfo : prevMappingInfo;
 
     final Application application = ApplicationManager.getApplication();
 
-    if (mapping.isPrefix(fromKeys)) {
+    if (node != null && node.hasChildren()) {
       mappingKeys.add(key);
+      commandState.setMappingNode(node);
       if (!application.isUnitTestMode() && Options.getInstance().isSet(Options.TIMEOUT)) {
         commandState.startMappingTimer(new ActionListener() {
           @Override
           public void actionPerformed(ActionEvent actionEvent) {
+            final List<KeyStroke> unhandledKeys = new ArrayList<KeyStroke>(mappingKeys);
             mappingKeys.clear();
+            commandState.setMappingNode(null);
             VimCommandStatusBarWidget.cleanVimCommandStatusBar(editor.getProject());
-            for (KeyStroke keyStroke : fromKeys) {
+            for (KeyStroke keyStroke : unhandledKeys) {
               handleKey(editor, keyStroke, new EditorDataContext(editor), false);
             }
           }
@@ -300,6 +304,7 @@ public class KeyHandler {
     }
     else if (mappingInfo != null) {
       mappingKeys.clear();
+      commandState.setMappingNode(null);
       final Runnable handleMappedKeys = new Runnable() {
         @Override
         public void run() {
@@ -342,6 +347,7 @@ public class KeyHandler {
     else {
       final List<KeyStroke> unhandledKeys = new ArrayList<KeyStroke>(mappingKeys);
       mappingKeys.clear();
+      commandState.setMappingNode(null);
       for (KeyStroke keyStroke : unhandledKeys) {
         handleKey(editor, keyStroke, context, false);
       }
@@ -704,6 +710,7 @@ public class KeyHandler {
     CommandState editorState = CommandState.getInstance(editor);
     editorState.stopMappingTimer();
     editorState.getMappingKeys().clear();
+    editorState.setMappingNode(null);
     editorState.setCurrentNode(VimPlugin.getKey().getKeyRoot(editorState.getMappingMode()));
   }
 
@@ -21,6 +21,7 @@ package com.maddyhome.idea.vim.command;
 import com.intellij.openapi.editor.Editor;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.helper.EditorData;
+import com.maddyhome.idea.vim.key.MappingNode;
 import com.maddyhome.idea.vim.key.ParentNode;
 import com.maddyhome.idea.vim.option.NumberOption;
 import com.maddyhome.idea.vim.option.Options;
@@ -44,6 +45,7 @@ public class CommandState {
   @Nullable private Command myCommand;
   @NotNull private ParentNode myCurrentNode = VimPlugin.getKey().getKeyRoot(getMappingMode());
   @NotNull private final List<KeyStroke> myMappingKeys = new ArrayList<KeyStroke>();
+  @Nullable private MappingNode myMappingNode;
   @NotNull private final Timer myMappingTimer;
   private int myFlags;
   private boolean myIsRecording = false;
@@ -138,6 +140,18 @@ public class CommandState {
     return myMappingKeys;
   }
 
+  /**
+   * The node of the key mapping tree for the mapping keys typed so far, null if no mapping keys are pending
+   */
+  @Nullable
+  public MappingNode getMappingNode() {
+    return myMappingNode;
+  }
+
+  public void setMappingNode(@Nullable MappingNode node) {
+    myMappingNode = node;
+  }
+
   public void startMappingTimer(@NotNull ActionListener actionListener) {
     final NumberOption timeoutLength = Options.getInstance().getNumberOption("timeoutlen");
     if (timeoutLength != null) {
@@ -27,7 +27,7 @@ import javax.swing.*;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.event.KeyEvent;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
@@ -38,12 +38,19 @@ public class Register {
   private Transferable transferable;
   private char name;
   @NotNull private final SelectionType type;
-  @NotNull private  List<KeyStroke> keys;
+  /**
+   * Plain text contents. Yanked and deleted text is stored as is, the key list is only built when it's requested.
+   */
+  @Nullable private String text;
+  /**
+   * Recorded keys. Only macros keep their contents as key strokes, since they can contain non-character keys.
+   */
+  @Nullable private List<KeyStroke> keys;
 
   public Register(char name, @NotNull SelectionType type, @NotNull String text) {
     this.name = name;
     this.type = type;
-    this.keys = StringHelper.stringToKeys(text);
+    this.text = text;
   }
 
   public Register(char name, @NotNull SelectionType type, @NotNull List<KeyStroke> keys) {
@@ -56,9 +63,9 @@ public class Register {
     this.name = name;
     this.type = type;
     try {
-      this.keys = StringHelper.stringToKeys((String)transferable.getTransferData(DataFlavor.stringFlavor));
+      this.text = (String)transferable.getTransferData(DataFlavor.stringFlavor);
     } catch (Exception e) {
-      this.keys = Collections.emptyList();
+      this.text = "";
       e.printStackTrace();
     }
     this.transferable = transferable;
@@ -88,7 +95,14 @@ public class Register {
    */
   @Nullable
   public String getText() {
-    final StringBuilder builder = new StringBuilder();
+    if (text != null) {
+      return text;
+    }
+    final List<KeyStroke> keys = this.keys;
+    if (keys == null) {
+      return null;
+    }
+    final StringBuilder builder = new StringBuilder(keys.size());
     for (KeyStroke key : keys) {
       final char c = key.getKeyChar();
       if (c == KeyEvent.CHAR_UNDEFINED) {
@@ -109,17 +123,29 @@ public class Register {
    */
   @NotNull
   public List<KeyStroke> getKeys() {
-    return keys;
+    if (keys != null) {
+      return keys;
+    }
+    return text != null ? StringHelper.stringToKeys(text) : new ArrayList<KeyStroke>();
   }
 
   /**
    * Append the supplied text to any existing text.
    */
   public void addText(@NotNull String text) {
-    addKeys(StringHelper.stringToKeys(text));
+    if (this.text != null) {
+      this.text = this.text + text;
+    }
+    else {
+      addKeys(StringHelper.stringToKeys(text));
+    }
   }
 
   public void addKeys(@NotNull List<KeyStroke> keys) {
+    if (this.keys == null) {
+      this.keys = getKeys();
+      this.text = null;
+    }
     this.keys.addAll(keys);
   }
 
@@ -21,12 +21,13 @@ package com.maddyhome.idea.vim.ex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-
 /**
- *
+ * A node of the tree of Ex command names. Command names are ASCII, so the children are kept in an array indexed by
+ * character.
  */
 public class CommandNode {
+  private static final int MAX_CHAR = 128;
+
   public CommandNode() {
     command = null;
   }
@@ -37,14 +38,21 @@ public class CommandNode {
 
   @NotNull
   public CommandNode addChild(char ch, CommandHandler command) {
+    if (ch >= MAX_CHAR) {
+      throw new IllegalArgumentException("Ex command names must be ASCII: " + ch);
+    }
+    if (nodes == null) {
+      nodes = new CommandNode[MAX_CHAR];
+    }
     CommandNode res = new CommandNode(command);
-    nodes.put(ch, res);
+    nodes[ch] = res;
 
     return res;
   }
 
+  @Nullable
   public CommandNode getChild(char ch) {
-    return nodes.get(ch);
+    return nodes != null && ch < MAX_CHAR ? nodes[ch] : null;
   }
 
   @Nullable
@@ -57,5 +65,5 @@ public class CommandNode {
   }
 
   @Nullable private CommandHandler command;
-  @NotNull private final HashMap<Character, CommandNode> nodes = new HashMap<Character, CommandNode>();
+  @Nullable private CommandNode[] nodes;
 }
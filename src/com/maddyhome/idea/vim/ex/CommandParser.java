@@ -33,6 +33,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.datatransfer.StringSelection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,6 +49,8 @@ public class CommandParser {
   public static final int RES_DONT_REOPEN = 4;
   public static final Pattern TRIM_WHITESPACE = Pattern.compile("[ \\t]*(.*)[ \\t\\n\\r]+", Pattern.DOTALL);
 
+  private static final int MAX_PARSED_COMMANDS = 256;
+
   /**
    * There is only one parser.
    *
@@ -204,7 +208,7 @@ public class CommandParser {
     final String cmd = command.getCommand();
     // If there is no command, just a range, use the 'goto line' handler
     if (cmd.length() == 0) {
-      return new GotoLineHandler();
+      return gotoLineHandler;
     }
     // See if the user entered a supported command by checking each character entered
     CommandNode node = root;
@@ -219,6 +223,9 @@ public class CommandParser {
 
   /**
    * Parse the text entered by the user. This does not include the leading colon.
+   * <p>
+   * Recently parsed commands are cached by their text. Every call returns a new command sharing the parsed ranges, so
+   * the range values computed while running a command and changes to its argument are never seen by the next run.
    *
    * @param cmd The user entered text
    * @return The parse result
@@ -226,6 +233,21 @@ public class CommandParser {
    */
   @NotNull
   public ExCommand parse(@NotNull String cmd) throws ExException {
+    ExCommand parsed;
+    synchronized (parsedCommands) {
+      parsed = parsedCommands.get(cmd);
+    }
+    if (parsed == null) {
+      parsed = parseCommand(cmd);
+      synchronized (parsedCommands) {
+        parsedCommands.put(cmd, parsed);
+      }
+    }
+    return new ExCommand(new Ranges(parsed.getRanges()), parsed.getCommand(), parsed.getArgument());
+  }
+
+  @NotNull
+  private ExCommand parseCommand(@NotNull String cmd) throws ExException {
     // This is a complicated state machine that should probably be rewritten
     if (logger.isDebugEnabled()) {
       logger.debug("processing `" + cmd + "'");
@@ -602,6 +624,13 @@ public class CommandParser {
   }
 
   @NotNull private final CommandNode root = new CommandNode();
+  @NotNull private final CommandHandler gotoLineHandler = new GotoLineHandler();
+  @NotNull private final Map<String, ExCommand> parsedCommands = new LinkedHashMap<String, ExCommand>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ExCommand> eldest) {
+      return size() > MAX_PARSED_COMMANDS;
+    }
+  };
   private boolean registered = false;
 
   private static CommandParser ourInstance;
@@ -0,0 +1,298 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.ex;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.maddyhome.idea.vim.option.Options;
+import com.maddyhome.idea.vim.regexp.RegExp;
+import com.maddyhome.idea.vim.regexp.RegExpCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Sorts lines the way ":sort" does.
+ * <p>
+ * The sort key of every line (the text after or inside the pattern match, folded to upper case or parsed as a number)
+ * is computed once before sorting, so comparing two lines never allocates. The sort is stable and the result is
+ * reversed as a whole for ":sort!", like Vim does. Large ranges are sorted in parallel.
+ */
+public class LineSorter {
+  public static final char NUMBER_NONE = 0;
+  public static final char NUMBER_DECIMAL = 'n';
+  public static final char NUMBER_HEX = 'x';
+  public static final char NUMBER_OCTAL = 'o';
+  public static final char NUMBER_BINARY = 'b';
+  public static final char NUMBER_FLOAT = 'f';
+
+  private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  /**
+   * @param reverse     Whether the sorted lines are put in reverse order
+   * @param ignoreCase  Whether case is ignored when comparing text keys and dropping duplicates
+   * @param unique      Whether only the first of a run of equal lines is kept
+   * @param number      One of the NUMBER_ constants, the kind of number the key is parsed as
+   * @param pattern     The pattern selecting the key, null to use the whole line
+   * @param sortOnMatch Whether the key is the match of the pattern instead of the text after it
+   */
+  public LineSorter(boolean reverse, boolean ignoreCase, boolean unique, char number, @Nullable String pattern,
+                    boolean sortOnMatch) {
+    this.reverse = reverse;
+    this.ignoreCase = ignoreCase;
+    this.unique = unique;
+    this.number = number;
+    this.pattern = pattern;
+    this.sortOnMatch = sortOnMatch;
+  }
+
+  /**
+   * Returns the text of the lines from startLine to endLine in sorted order, separated by new lines, or null if the
+   * pattern is invalid.
+   */
+  @Nullable
+  public String sort(@NotNull Editor editor, int startLine, int endLine) {
+    final Document doc = editor.getDocument();
+    final CharSequence chars = doc.getCharsSequence();
+
+    RegExp regExp = null;
+    RegExp.regmmatch_T regMatch = null;
+    if (pattern != null) {
+      regExp = new RegExp();
+      regMatch = new RegExp.regmmatch_T();
+      regMatch.regprog = RegExpCache.getInstance().vim_regcomp(regExp, pattern, 1);
+      if (regMatch.regprog == null) {
+        return null;
+      }
+      regMatch.rmm_ic = Options.getInstance().isSet("ignorecase");
+    }
+
+    final int count = endLine - startLine + 1;
+    final Line[] lines = new Line[count];
+    for (int i = 0; i < count; i++) {
+      final int line = startLine + i;
+      final String text = chars.subSequence(doc.getLineStartOffset(line), doc.getLineEndOffset(line)).toString();
+      int keyStart = 0;
+      int keyEnd = text.length();
+      if (regExp != null) {
+        // A line count equal to the line number keeps the match within this line
+        if (regExp.vim_regexec_multi(regMatch, editor, line, line, 0) > 0) {
+          if (sortOnMatch) {
+            keyStart = regMatch.startpos[0].col;
+            keyEnd = Math.max(keyStart, regMatch.endpos[0].col);
+          }
+          else {
+            keyStart = regMatch.endpos[0].col;
+          }
+        }
+        else {
+          // Lines without a match sort before the others, in their current order
+          keyEnd = 0;
+        }
+      }
+      lines[i] = createLine(text, Math.min(keyStart, keyEnd), keyEnd);
+    }
+
+    final Comparator<Line> comparator = getComparator();
+    if (count >= PARALLEL_THRESHOLD) {
+      Arrays.parallelSort(lines, comparator);
+    }
+    else {
+      Arrays.sort(lines, comparator);
+    }
+
+    final StringBuilder res = new StringBuilder(doc.getLineEndOffset(endLine) - doc.getLineStartOffset(startLine));
+    String previous = null;
+    for (int i = 0; i < count; i++) {
+      final String text = lines[reverse ? count - 1 - i : i].text;
+      if (unique && previous != null && (ignoreCase ? text.equalsIgnoreCase(previous) : text.equals(previous))) {
+        continue;
+      }
+      if (previous != null) {
+        res.append('\n');
+      }
+      res.append(text);
+      previous = text;
+    }
+
+    return res.toString();
+  }
+
+  @NotNull
+  private Line createLine(@NotNull String text, int keyStart, int keyEnd) {
+    final Line line = new Line(text);
+    switch (number) {
+      case NUMBER_NONE:
+        final String key = keyStart == 0 && keyEnd == text.length() ? text : text.substring(keyStart, keyEnd);
+        line.key = ignoreCase ? key.toUpperCase() : key;
+        break;
+      case NUMBER_FLOAT:
+        line.value = parseFloat(text, keyStart, keyEnd);
+        break;
+      default:
+        parseNumber(line, text, keyStart, keyEnd);
+        break;
+    }
+    return line;
+  }
+
+  /**
+   * Parses the first number in the key, lines without a number sort before all the lines with one.
+   */
+  private void parseNumber(@NotNull Line line, @NotNull String text, int keyStart, int keyEnd) {
+    final int radix = number == NUMBER_HEX ? 16 : number == NUMBER_OCTAL ? 8 : number == NUMBER_BINARY ? 2 : 10;
+    int pos = keyStart;
+    while (pos < keyEnd && Character.digit(text.charAt(pos), radix) < 0) {
+      pos++;
+    }
+    if (pos == keyEnd) {
+      return;
+    }
+
+    final boolean negative = pos > keyStart && text.charAt(pos - 1) == '-';
+    if ((radix == 16 || radix == 2) && text.charAt(pos) == '0' && pos + 2 < keyEnd &&
+        Character.toLowerCase(text.charAt(pos + 1)) == (radix == 16 ? 'x' : 'b') &&
+        Character.digit(text.charAt(pos + 2), radix) >= 0) {
+      pos += 2;
+    }
+
+    long value = 0;
+    for (; pos < keyEnd; pos++) {
+      final int digit = Character.digit(text.charAt(pos), radix);
+      if (digit < 0) {
+        break;
+      }
+      // Saturate instead of overflowing into negative numbers
+      value = value > (Long.MAX_VALUE - digit) / radix ? Long.MAX_VALUE : value * radix + digit;
+    }
+
+    line.isNumber = true;
+    line.number = negative ? -value : value;
+  }
+
+  /**
+   * Parses the float at the start of the key, an empty key sorts before any number and a key that doesn't start with a
+   * number is zero.
+   */
+  private static double parseFloat(@NotNull String text, int keyStart, int keyEnd) {
+    int pos = skipWhitespace(text, keyStart, keyEnd);
+    if (pos < keyEnd && text.charAt(pos) == '+') {
+      pos = skipWhitespace(text, pos + 1, keyEnd);
+    }
+    if (pos == keyEnd) {
+      return -Double.MAX_VALUE;
+    }
+
+    final int start = pos;
+    if (text.charAt(pos) == '-') {
+      pos++;
+    }
+    final int intStart = pos;
+    pos = skipDigits(text, pos, keyEnd);
+    boolean digits = pos > intStart;
+    if (pos < keyEnd && text.charAt(pos) == '.') {
+      final int fractionStart = pos + 1;
+      final int fractionEnd = skipDigits(text, fractionStart, keyEnd);
+      if (digits || fractionEnd > fractionStart) {
+        digits = true;
+        pos = fractionEnd;
+      }
+    }
+    if (!digits) {
+      return 0;
+    }
+    if (pos < keyEnd && Character.toLowerCase(text.charAt(pos)) == 'e') {
+      int exp = pos + 1;
+      if (exp < keyEnd && (text.charAt(exp) == '-' || text.charAt(exp) == '+')) {
+        exp++;
+      }
+      final int expEnd = skipDigits(text, exp, keyEnd);
+      if (expEnd > exp) {
+        pos = expEnd;
+      }
+    }
+
+    return Double.parseDouble(text.substring(start, pos));
+  }
+
+  private static int skipWhitespace(@NotNull String text, int pos, int end) {
+    while (pos < end && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) {
+      pos++;
+    }
+    return pos;
+  }
+
+  private static int skipDigits(@NotNull String text, int pos, int end) {
+    while (pos < end && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+      pos++;
+    }
+    return pos;
+  }
+
+  @NotNull
+  private Comparator<Line> getComparator() {
+    switch (number) {
+      case NUMBER_NONE:
+        return new Comparator<Line>() {
+          @Override
+          public int compare(@NotNull Line l1, @NotNull Line l2) {
+            return l1.key.compareTo(l2.key);
+          }
+        };
+      case NUMBER_FLOAT:
+        return new Comparator<Line>() {
+          @Override
+          public int compare(@NotNull Line l1, @NotNull Line l2) {
+            return Double.compare(l1.value, l2.value);
+          }
+        };
+      default:
+        return new Comparator<Line>() {
+          @Override
+          public int compare(@NotNull Line l1, @NotNull Line l2) {
+            if (l1.isNumber != l2.isNumber) {
+              return l1.isNumber ? 1 : -1;
+            }
+            return l1.number < l2.number ? -1 : l1.number == l2.number ? 0 : 1;
+          }
+        };
+    }
+  }
+
+  private static class Line {
+    public Line(@NotNull String text) {
+      this.text = text;
+    }
+
+    @NotNull private final String text;
+    private String key;
+    private boolean isNumber;
+    private long number;
+    private double value;
+  }
+
+  private final boolean reverse;
+  private final boolean ignoreCase;
+  private final boolean unique;
+  private final char number;
+  @Nullable private final String pattern;
+  private final boolean sortOnMatch;
+}
@@ -42,6 +42,15 @@ public class Ranges {
     ranges = new ArrayList<Range>();
   }
 
+  /**
+   * Create a range list with the ranges of another list. The line values computed for the other list are not copied.
+   *
+   * @param other The list to copy the ranges of
+   */
+  public Ranges(@NotNull Ranges other) {
+    ranges = new ArrayList<Range>(other.ranges);
+  }
+
   /**
    * Adds a range to the list
    *
@@ -25,12 +25,13 @@ import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.ex.CommandHandler;
 import com.maddyhome.idea.vim.ex.ExCommand;
 import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.ex.vimscript.VimScriptCommandHandler;
 import org.jetbrains.annotations.NotNull;
 
 /**
  *
  */
-public class DigraphHandler extends CommandHandler {
+public class DigraphHandler extends CommandHandler implements VimScriptCommandHandler {
   public DigraphHandler() {
     super("dig", "raphs", ARGUMENT_OPTIONAL);
   }
@@ -44,5 +45,10 @@ public class DigraphHandler extends CommandHandler {
     return VimPlugin.getDigraph().parseCommandLine(editor, cmd.getArgument());
   }
 
+  @Override
+  public void execute(@NotNull ExCommand cmd) throws ExException {
+    VimPlugin.getDigraph().addDigraphs(cmd.getArgument());
+  }
+
   private static final Logger logger = Logger.getInstance(DigraphHandler.class.getName());
 }
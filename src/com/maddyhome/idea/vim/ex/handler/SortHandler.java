@@ -21,16 +21,17 @@ package com.maddyhome.idea.vim.ex.handler;
 import com.intellij.openapi.actionSystem.DataContext;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.SelectionModel;
-import com.intellij.openapi.util.text.StringUtil;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.ex.CommandHandler;
 import com.maddyhome.idea.vim.ex.ExCommand;
 import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.ex.InvalidArgumentException;
 import com.maddyhome.idea.vim.ex.LineRange;
+import com.maddyhome.idea.vim.ex.LineSorter;
+import com.maddyhome.idea.vim.helper.MessageHelper;
+import com.maddyhome.idea.vim.helper.Msg;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Comparator;
-
 /**
  * @author Alex Selesse
  */
@@ -42,17 +43,88 @@ public class SortHandler extends CommandHandler {
   @Override
   public boolean execute(@NotNull Editor editor, @NotNull DataContext context,
                          @NotNull ExCommand cmd) throws ExException {
-    final String arg = cmd.getArgument();
-    final boolean nonEmptyArg = arg.trim().length() > 0;
+    final LineSorter sorter = parseArgument(cmd.getArgument());
+    final LineRange range = getLineRange(editor, context, cmd);
 
-    final boolean reverse = nonEmptyArg && arg.contains("!");
-    final boolean ignoreCase = nonEmptyArg && arg.contains("i");
-    final boolean number = nonEmptyArg && arg.contains("n");
+    return VimPlugin.getChange().sortRange(editor, range, sorter);
+  }
 
-    final LineRange range = getLineRange(editor, context, cmd);
-    final Comparator<String> lineComparator = new LineComparator(ignoreCase, number, reverse);
+  /**
+   * Parses ":sort[!] [b][f][i][n][o][r][u][x] [/{pattern}/]". The pattern may be delimited by any character that isn't
+   * a letter, an empty pattern stands for the last used one.
+   */
+  @NotNull
+  private static LineSorter parseArgument(@NotNull String arg) throws ExException {
+    boolean reverse = false;
+    boolean ignoreCase = false;
+    boolean unique = false;
+    boolean sortOnMatch = false;
+    char number = LineSorter.NUMBER_NONE;
+    String pattern = null;
+
+    for (int i = 0; i < arg.length(); i++) {
+      final char c = arg.charAt(i);
+      if (Character.isWhitespace(c)) {
+        continue;
+      }
+      switch (c) {
+        case '!':
+          reverse = true;
+          break;
+        case 'i':
+          ignoreCase = true;
+          break;
+        case 'u':
+          unique = true;
+          break;
+        case 'r':
+          sortOnMatch = true;
+          break;
+        case LineSorter.NUMBER_DECIMAL:
+        case LineSorter.NUMBER_HEX:
+        case LineSorter.NUMBER_OCTAL:
+        case LineSorter.NUMBER_BINARY:
+        case LineSorter.NUMBER_FLOAT:
+          if (number != LineSorter.NUMBER_NONE && number != c) {
+            throw new InvalidArgumentException(MessageHelper.message(Msg.e_invarg, arg));
+          }
+          number = c;
+          break;
+        default:
+          if (pattern != null || Character.isLetter(c)) {
+            throw new InvalidArgumentException(MessageHelper.message(Msg.e_invarg, arg));
+          }
+          final int end = findPatternEnd(arg, i + 1, c);
+          if (end < 0) {
+            throw new InvalidArgumentException(MessageHelper.message(Msg.e_invarg, arg));
+          }
+          pattern = arg.substring(i + 1, end);
+          i = end;
+          break;
+      }
+    }
+
+    if (pattern != null && pattern.isEmpty()) {
+      pattern = VimPlugin.getSearch().getLastPattern();
+      if (pattern == null) {
+        throw new ExException(MessageHelper.message(Msg.e_noprevre));
+      }
+    }
+
+    return new LineSorter(reverse, ignoreCase, unique, number, pattern, sortOnMatch);
+  }
 
-    return VimPlugin.getChange().sortRange(editor, range, lineComparator);
+  private static int findPatternEnd(@NotNull String arg, int start, char delimiter) {
+    for (int i = start; i < arg.length(); i++) {
+      final char c = arg.charAt(i);
+      if (c == '\\') {
+        i++;
+      }
+      else if (c == delimiter) {
+        return i;
+      }
+    }
+    return -1;
   }
 
   @NotNull
@@ -89,30 +161,4 @@ public class SortHandler extends CommandHandler {
 
     return normalizedRange;
   }
-
-  private static class LineComparator implements Comparator<String> {
-    private final boolean myIgnoreCase;
-    private final boolean myNumber;
-    private final boolean myReverse;
-
-    public LineComparator(boolean ignoreCase, boolean number, boolean reverse) {
-      myIgnoreCase = ignoreCase;
-      myNumber = number;
-      myReverse = reverse;
-    }
-
-    @Override
-    public int compare(String o1, String o2) {
-      if (myReverse) {
-        final String tmp = o2;
-        o2 = o1;
-        o1 = tmp;
-      }
-      if (myIgnoreCase) {
-        o1 = o1.toUpperCase();
-        o2 = o2.toUpperCase();
-      }
-      return myNumber ? StringUtil.naturalCompare(o1, o2) : o1.compareTo(o2);
-    }
-  }
 }
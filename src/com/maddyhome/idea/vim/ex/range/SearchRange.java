@@ -34,6 +34,8 @@ import java.util.StringTokenizer;
  * or ?{pattern}?.  The last two can be repeated 0 or more times after any of the others.
  */
 public class SearchRange extends AbstractRange {
+  private static final int FLAG_LAST_PATTERN = 1 << 30;
+
   /**
    * Create the pattern range
    *
@@ -58,17 +60,19 @@ public class SearchRange extends AbstractRange {
     StringTokenizer tok = new StringTokenizer(pattern, "\u0000");
     while (tok.hasMoreTokens()) {
       String pat = tok.nextToken();
+      // The last search and substitute patterns are looked up when the range is used, a parsed command can be
+      // executed more than once
       if (pat.equals("\\/")) {
-        patterns.add(VimPlugin.getSearch().getLastSearch());
+        patterns.add(null);
         flags.add(Command.FLAG_SEARCH_FWD);
       }
       else if (pat.equals("\\?")) {
-        patterns.add(VimPlugin.getSearch().getLastSearch());
+        patterns.add(null);
         flags.add(Command.FLAG_SEARCH_REV);
       }
       else if (pat.equals("\\&")) {
-        patterns.add(VimPlugin.getSearch().getLastPattern());
-        flags.add(Command.FLAG_SEARCH_FWD);
+        patterns.add(null);
+        flags.add(Command.FLAG_SEARCH_FWD | FLAG_LAST_PATTERN);
       }
       else {
         if (pat.charAt(0) == '/') {
@@ -102,6 +106,11 @@ public class SearchRange extends AbstractRange {
     for (int i = 0; i < patterns.size(); i++) {
       String pattern = patterns.get(i);
       int flag = flags.get(i);
+      if (pattern == null) {
+        pattern = (flag & FLAG_LAST_PATTERN) != 0 ? VimPlugin.getSearch().getLastPattern()
+                                                  : VimPlugin.getSearch().getLastSearch();
+        flag &= ~FLAG_LAST_PATTERN;
+      }
       if ((flag & Command.FLAG_SEARCH_FWD) != 0 && !lastZero) {
         pos = VimPlugin.getMotion().moveCaretToLineEnd(editor, line, true);
       }
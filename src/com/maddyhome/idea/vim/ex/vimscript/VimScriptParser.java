@@ -18,6 +18,8 @@
 
 package com.maddyhome.idea.vim.ex.vimscript;
 
+import com.intellij.openapi.diagnostic.Logger;
+import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.ex.CommandHandler;
 import com.maddyhome.idea.vim.ex.CommandParser;
 import com.maddyhome.idea.vim.ex.ExCommand;
@@ -29,6 +31,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -39,7 +43,6 @@ import java.util.regex.Pattern;
 public class VimScriptParser {
   public static final String[] VIMRC_FILES = {".ideavimrc", "_ideavimrc"};
   public static final int BUFSIZE = 4096;
-  private static final Pattern EOL_SPLIT_PATTERN = Pattern.compile(" *(\r\n|\n)+ *");
   private static final Pattern DOUBLE_QUOTED_STRING = Pattern.compile("\"([^\"]*)\"");
   private static final Pattern SINGLE_QUOTED_STRING = Pattern.compile("'([^']*)'");
   private static final Pattern REFERENCE_EXPR = Pattern.compile("([A-Za-z_][A-Za-z_0-9]*)");
@@ -62,37 +65,99 @@ public class VimScriptParser {
   }
 
   public static void executeFile(@NotNull File file) {
-    final String data;
     try {
-      data = readFile(file);
+      final Reader reader = new BufferedReader(new FileReader(file), BUFSIZE);
+      try {
+        executeLines(reader);
+      }
+      finally {
+        reader.close();
+      }
     }
     catch (IOException ignored) {
-      return;
     }
-    executeText(data);
   }
 
   public static void executeText(@NotNull String text) {
-    for (String line : EOL_SPLIT_PATTERN.split(text)) {
-      // TODO: Build a proper parse tree for a VimL file instead of ignoring potentially nested lines (VIM-669)
-      if (line.startsWith(" ") || line.startsWith("\t")) {
-        continue;
-      }
-      if (line.startsWith(":")) {
-        line = line.substring(1);
-      }
-      final CommandParser commandParser = CommandParser.getInstance();
-      try {
-        final ExCommand command = commandParser.parse(line);
-        final CommandHandler commandHandler = commandParser.getCommandHandler(command);
-        if (commandHandler instanceof VimScriptCommandHandler) {
-          final VimScriptCommandHandler handler = (VimScriptCommandHandler)commandHandler;
-          handler.execute(command);
+    try {
+      executeLines(new StringReader(text));
+    }
+    catch (IOException ignored) {
+    }
+  }
+
+  /**
+   * Reads the script line by line and executes each line as soon as it is complete. Line breaks are "\n" or "\r\n".
+   * Spaces around line breaks are ignored, so are empty lines.
+   */
+  private static void executeLines(@NotNull Reader reader) throws IOException {
+    final long startTime = System.nanoTime();
+    final StringBuilder line = new StringBuilder();
+    final char[] buffer = new char[BUFSIZE];
+    boolean firstLine = true;
+    boolean lineStart = true;
+    int lineCount = 0;
+    VimPlugin.getKey().startMappingBatch();
+    try {
+      int n;
+      while ((n = reader.read(buffer)) > 0) {
+        for (int i = 0; i < n; i++) {
+          final char c = buffer[i];
+          if (c == '\n') {
+            int end = line.length();
+            if (end > 0 && line.charAt(end - 1) == '\r') {
+              end--;
+            }
+            while (end > 0 && line.charAt(end - 1) == ' ') {
+              end--;
+            }
+            line.setLength(end);
+            executeLine(line.toString());
+            lineCount++;
+            line.setLength(0);
+            firstLine = false;
+            lineStart = true;
+          }
+          else if (c != ' ' || !lineStart || firstLine) {
+            line.append(c);
+            lineStart = false;
+          }
         }
       }
-      catch (ExException ignored) {
+      executeLine(line.toString());
+      lineCount++;
+    }
+    finally {
+      VimPlugin.getKey().finishMappingBatch();
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Executed " + lineCount + " lines in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+    }
+  }
+
+  private static void executeLine(@NotNull String line) {
+    // TODO: Build a proper parse tree for a VimL file instead of ignoring potentially nested lines (VIM-669)
+    if (line.isEmpty() || line.startsWith(" ") || line.startsWith("\t")) {
+      return;
+    }
+    final long startTime = System.nanoTime();
+    if (line.startsWith(":")) {
+      line = line.substring(1);
+    }
+    final CommandParser commandParser = CommandParser.getInstance();
+    try {
+      final ExCommand command = commandParser.parse(line);
+      final CommandHandler commandHandler = commandParser.getCommandHandler(command);
+      if (commandHandler instanceof VimScriptCommandHandler) {
+        final VimScriptCommandHandler handler = (VimScriptCommandHandler)commandHandler;
+        handler.execute(command);
       }
     }
+    catch (ExException ignored) {
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug((System.nanoTime() - startTime) / 1000 + " us: " + line);
+    }
   }
 
   @NotNull
@@ -131,15 +196,5 @@ public class VimScriptParser {
     throw new ExException(String.format("Cannot convert '%s' to string", value));
   }
 
-  @NotNull
-  private static String readFile(@NotNull File file) throws IOException {
-    final BufferedReader reader = new BufferedReader(new FileReader(file));
-    final StringBuilder builder = new StringBuilder();
-    final char[] buffer = new char[BUFSIZE];
-    int n;
-    while ((n = reader.read(buffer)) > 0) {
-      builder.append(buffer, 0, n);
-    }
-    return builder.toString();
-  }
+  private static final Logger logger = Logger.getInstance(VimScriptParser.class.getName());
 }
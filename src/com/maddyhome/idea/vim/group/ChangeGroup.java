@@ -17,9 +17,7 @@
  */
 package com.maddyhome.idea.vim.group;
 
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.intellij.codeInsight.editorActions.CopyPastePreProcessor;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.AnAction;
@@ -44,13 +42,11 @@ import com.intellij.openapi.editor.event.EditorFactoryAdapter;
 import com.intellij.openapi.editor.event.EditorFactoryEvent;
 import com.intellij.openapi.editor.event.EditorMouseAdapter;
 import com.intellij.openapi.editor.event.EditorMouseEvent;
-import com.intellij.openapi.editor.impl.TextRangeInterval;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.codeStyle.CodeStyleSettings;
@@ -66,6 +62,7 @@ import com.maddyhome.idea.vim.command.SelectionType;
 import com.maddyhome.idea.vim.common.Register;
 import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.ex.LineRange;
+import com.maddyhome.idea.vim.ex.LineSorter;
 import com.maddyhome.idea.vim.helper.CharacterHelper;
 import com.maddyhome.idea.vim.helper.EditorData;
 import com.maddyhome.idea.vim.helper.EditorHelper;
@@ -80,8 +77,6 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -426,7 +421,7 @@ public class ChangeGroup {
       // <Enter> is added to strokes as an action during processing in order to indent code properly in the repeat
       // command
       if (newFragment.startsWith("\n") && newFragment.trim().isEmpty()) {
-        strokes.addAll(getAdjustCaretActions(e));
+        addCaretMove(e);
         oldOffset = -1;
         return;
       }
@@ -436,39 +431,84 @@ public class ChangeGroup {
         return;
       }
 
-      strokes.addAll(getAdjustCaretActions(e));
+      addCaretMove(e);
 
       if (oldFragmentLength > 0) {
-        final AnAction editorDelete = ActionManager.getInstance().getAction("EditorDelete");
-        for (int i = 0; i < oldFragmentLength; i++) {
-          strokes.add(editorDelete);
+        final Object last = getLastStroke();
+        if (last instanceof DeleteStroke) {
+          ((DeleteStroke)last).count += oldFragmentLength;
+        }
+        else {
+          strokes.add(new DeleteStroke(oldFragmentLength));
         }
       }
 
       if (newFragmentLength > 0) {
-        strokes.add(newFragment.toCharArray());
+        final Object last = getLastStroke();
+        if (last instanceof InsertTextStroke) {
+          ((InsertTextStroke)last).text.append(newFragment);
+        }
+        else {
+          strokes.add(new InsertTextStroke(newFragment));
+        }
       }
       repeatCharsCount += newFragmentLength;
       oldOffset = e.getOffset() + newFragmentLength;
     }
 
-    @NotNull
-    private List<AnAction> getAdjustCaretActions(DocumentEvent e) {
+    private void addCaretMove(@NotNull DocumentEvent e) {
       final int delta = e.getOffset() - oldOffset;
       if (oldOffset >= 0 && delta != 0) {
-        final List<AnAction> positionCaretActions = new ArrayList<AnAction>();
-        final String motionName = delta < 0 ? "VimMotionLeft" : "VimMotionRight";
-        final AnAction action = ActionManager.getInstance().getAction(motionName);
-        final int count = Math.abs(delta);
-        for (int i = 0; i < count; i++) {
-          positionCaretActions.add(action);
+        // Moves in the same direction are merged, they are clamped to the line the same way when repeated
+        final Object last = getLastStroke();
+        if (last instanceof CaretMoveStroke && (((CaretMoveStroke)last).delta < 0) == (delta < 0)) {
+          ((CaretMoveStroke)last).delta += delta;
+        }
+        else {
+          strokes.add(new CaretMoveStroke(delta));
         }
-        return positionCaretActions;
       }
-      return Collections.emptyList();
+    }
+
+    @Nullable
+    private Object getLastStroke() {
+      return strokes.isEmpty() ? null : strokes.get(strokes.size() - 1);
     }
   }
 
+  /**
+   * Moves the caret like the given number of "VimMotionLeft" (negative) or "VimMotionRight" (positive) actions.
+   */
+  private static class CaretMoveStroke {
+    public CaretMoveStroke(int delta) {
+      this.delta = delta;
+    }
+
+    private int delta;
+  }
+
+  /**
+   * Deletes the given number of characters after the caret like that many "EditorDelete" actions.
+   */
+  private static class DeleteStroke {
+    public DeleteStroke(int count) {
+      this.count = count;
+    }
+
+    private int count;
+  }
+
+  /**
+   * Inserts text at the caret, consecutive typed characters are collected into a single stroke.
+   */
+  private static class InsertTextStroke {
+    public InsertTextStroke(@NotNull String text) {
+      this.text = new StringBuilder(text);
+    }
+
+    @NotNull private final StringBuilder text;
+  }
+
   /**
    * This repeats the previous insert count times
    *
@@ -522,9 +562,21 @@ public class ChangeGroup {
    * @param count   The number of times to repeat the previous insert
    */
   private void repeatInsertText(@NotNull Editor editor, @NotNull DataContext context, int count) {
-    if (lastStrokes == null) {
+    if (lastStrokes == null || count <= 0) {
+      return;
+    }
+
+    // A plain insert is repeated with a single document change
+    if (lastStrokes.size() == 1 && lastStrokes.get(0) instanceof InsertTextStroke) {
+      final StringBuilder text = ((InsertTextStroke)lastStrokes.get(0)).text;
+      final StringBuilder repeated = new StringBuilder(text.length() * count);
+      for (int i = 0; i < count; i++) {
+        repeated.append(text);
+      }
+      insertText(editor, editor.getCaretModel().getOffset(), repeated.toString());
       return;
     }
+
     for (int i = 0; i < count; i++) {
       // Treat other keys special by performing the appropriate action they represent in insert/replace mode
       for (Object lastStroke : lastStrokes) {
@@ -532,9 +584,23 @@ public class ChangeGroup {
           KeyHandler.executeAction((AnAction)lastStroke, context);
           strokes.add(lastStroke);
         }
-        else if (lastStroke instanceof char[]) {
-          final char[] chars = (char[])lastStroke;
-          insertText(editor, editor.getCaretModel().getOffset(), new String(chars));
+        else if (lastStroke instanceof CaretMoveStroke) {
+          final int delta = ((CaretMoveStroke)lastStroke).delta;
+          final int offset = VimPlugin.getMotion().moveCaretHorizontal(editor, delta, delta > 0);
+          if (offset != -1) {
+            MotionGroup.moveCaret(editor, offset);
+          }
+        }
+        else if (lastStroke instanceof DeleteStroke) {
+          final int offset = editor.getCaretModel().getOffset();
+          final int end = Math.min(offset + ((DeleteStroke)lastStroke).count, editor.getDocument().getTextLength());
+          if (end > offset) {
+            editor.getDocument().deleteString(offset, end);
+          }
+        }
+        else if (lastStroke instanceof InsertTextStroke) {
+          final String text = ((InsertTextStroke)lastStroke).text.toString();
+          insertText(editor, editor.getCaretModel().getOffset(), text);
         }
       }
     }
@@ -1699,16 +1765,14 @@ public class ChangeGroup {
   }
 
   /**
-   * Sort range of text with a given comparator
+   * Sorts the lines of a range, replacing them with a single change
    *
-   * @param editor         The editor to replace text in
-   * @param range          The range to sort
-   * @param lineComparator The comparator to use to sort
+   * @param editor The editor to replace text in
+   * @param range  The range to sort
+   * @param sorter The sorter configured with the options of the sort
    * @return true if able to sort the text, false if not
    */
-  public boolean sortRange(@NotNull Editor editor,
-                           @NotNull LineRange range,
-                           @NotNull Comparator<String> lineComparator) {
+  public boolean sortRange(@NotNull Editor editor, @NotNull LineRange range, @NotNull LineSorter sorter) {
     final int startLine = range.getStartLine();
     final int endLine = range.getEndLine();
     final int count = endLine - startLine + 1;
@@ -1716,32 +1780,14 @@ public class ChangeGroup {
       return false;
     }
 
-    final int startOffset = editor.getDocument().getLineStartOffset(startLine);
-    final int endOffset = editor.getDocument().getLineEndOffset(endLine);
-
-    return sortTextRange(editor, startOffset, endOffset, lineComparator);
-  }
-
-  /**
-   * Sorts a text range with a comparator. Returns true if a replace was performed, false otherwise.
-   *
-   * @param editor         The editor to replace text in
-   * @param start          The starting position for the sort
-   * @param end            The ending position for the sort
-   * @param lineComparator The comparator to use to sort
-   * @return true if able to sort the text, false if not
-   */
-  private boolean sortTextRange(@NotNull Editor editor,
-                                int start,
-                                int end,
-                                @NotNull Comparator<String> lineComparator) {
-    final String selectedText = editor.getDocument().getText(new TextRangeInterval(start, end));
-    final List<String> lines = Lists.newArrayList(Splitter.on("\n").split(selectedText));
-    if (lines.size() < 1) {
+    final String sorted = sorter.sort(editor, startLine, endLine);
+    if (sorted == null) {
       return false;
     }
-    Collections.sort(lines, lineComparator);
-    replaceText(editor, start, end, StringUtil.join(lines, "\n"));
+
+    final int startOffset = editor.getDocument().getLineStartOffset(startLine);
+    final int endOffset = editor.getDocument().getLineEndOffset(endLine);
+    replaceText(editor, startOffset, endOffset, sorted);
     return true;
   }
 
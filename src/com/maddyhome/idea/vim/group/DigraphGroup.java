@@ -20,11 +20,14 @@ package com.maddyhome.idea.vim.group;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
+import com.maddyhome.idea.vim.ex.ExException;
 import com.maddyhome.idea.vim.ex.ExOutputModel;
+import com.maddyhome.idea.vim.ex.InvalidArgumentException;
 import com.maddyhome.idea.vim.helper.EditorHelper;
+import com.maddyhome.idea.vim.helper.MessageHelper;
+import com.maddyhome.idea.vim.helper.Msg;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
 import java.util.TreeMap;
 
 public class DigraphGroup {
@@ -33,38 +36,83 @@ public class DigraphGroup {
   }
 
   public char getDigraph(char ch1, char ch2) {
-    String key = new String(new char[]{ch1, ch2});
-    Character ch = digraphs.get(key);
-    if (ch == null) {
-      key = new String(new char[]{ch2, ch1});
-      ch = digraphs.get(key);
+    int ch = findDigraph(ch1, ch2);
+    if (ch < 0) {
+      ch = findDigraph(ch2, ch1);
     }
 
-    if (ch == null) {
+    if (ch < 0) {
       return ch2;
     }
     else {
-      return ch;
+      return (char)ch;
     }
   }
 
-  public boolean parseCommandLine(@NotNull Editor editor, @NotNull String args) {
+  public boolean parseCommandLine(@NotNull Editor editor, @NotNull String args) throws ExException {
     if (args.length() == 0) {
       showDigraphs(editor);
 
       return true;
     }
 
+    addDigraphs(args);
+
     return true;
   }
 
+  /**
+   * Adds the digraphs defined by the arguments of the <code>:digraphs</code> command.
+   */
+  public void addDigraphs(@NotNull String args) throws ExException {
+    // Each definition is a pair of characters followed by the decimal code of the character they stand for
+    int pos = 0;
+    while (true) {
+      pos = skipWhitespace(args, pos);
+      if (pos == args.length()) {
+        break;
+      }
+      if (pos + 1 >= args.length()) {
+        throw new InvalidArgumentException(MessageHelper.message(Msg.e_invarg, args));
+      }
+      final char ch1 = args.charAt(pos++);
+      final char ch2 = args.charAt(pos++);
+      if (ch1 == '\u001B' || ch2 == '\u001B') {
+        throw new ExException(MessageHelper.message(Msg.E104));
+      }
+
+      pos = skipWhitespace(args, pos);
+      int code = 0;
+      final int start = pos;
+      while (pos < args.length() && Character.isDigit(args.charAt(pos))) {
+        code = code * 10 + Character.digit(args.charAt(pos), 10);
+        pos++;
+        if (code > Character.MAX_VALUE) {
+          throw new InvalidArgumentException(MessageHelper.message(Msg.e_invarg, args.substring(start)));
+        }
+      }
+      if (pos == start) {
+        throw new ExException(MessageHelper.message(Msg.E39));
+      }
+
+      addDigraph(ch1, ch2, (char)code);
+    }
+  }
+
+  private static int skipWhitespace(@NotNull String text, int pos) {
+    while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+      pos++;
+    }
+    return pos;
+  }
+
   private void showDigraphs(@NotNull Editor editor) {
     int width = EditorHelper.getScreenWidth(editor);
     if (width < 10) {
       width = 80;
     }
     int colCount = width / 12;
-    int height = (int)Math.ceil((double)digraphs.size() / (double)colCount);
+    int height = (int)Math.ceil((double)digraphCount / (double)colCount);
 
     if (logger.isDebugEnabled()) {
       logger.debug("width=" + width);
@@ -117,17 +165,76 @@ public class DigraphGroup {
   private void loadDigraphs() {
     for (int i = 0; i < defaultDigraphs.length; i += 3) {
       if (defaultDigraphs[i] != '\0' && defaultDigraphs[i + 1] != '\0') {
-        char ch = defaultDigraphs[i + 2];
-        String key = new String(new char[]{defaultDigraphs[i], defaultDigraphs[i + 1]});
-        digraphs.put(key, ch);
-        keys.put(ch, key);
+        addDigraph(defaultDigraphs[i], defaultDigraphs[i + 1], defaultDigraphs[i + 2]);
       }
     }
+  }
 
-    // TODO - load custom digraphs from .ideavimrc
+  /**
+   * Adds the digraph, replacing the character of an existing digraph with the same pair of characters.
+   */
+  private void addDigraph(char ch1, char ch2, char ch) {
+    if (2 * (digraphCount + 1) > digraphKeys.length) {
+      final int[] oldKeys = digraphKeys;
+      final char[] oldValues = digraphValues;
+      digraphKeys = new int[oldKeys.length * 2];
+      digraphValues = new char[oldKeys.length * 2];
+      digraphShift--;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != 0) {
+          final int slot = findSlot(oldKeys[i]);
+          digraphKeys[slot] = oldKeys[i];
+          digraphValues[slot] = oldValues[i];
+        }
+      }
+    }
+
+    final int key = ch1 << 16 | ch2;
+    final int slot = findSlot(key);
+    final String pair = new String(new char[]{ch1, ch2});
+    if (digraphKeys[slot] == 0) {
+      digraphKeys[slot] = key;
+      digraphCount++;
+    }
+    else if (pair.equals(keys.get(digraphValues[slot]))) {
+      // The pair no longer stands for its old character
+      keys.remove(digraphValues[slot]);
+    }
+    digraphValues[slot] = ch;
+    keys.put(ch, pair);
   }
 
-  @NotNull private final HashMap<String, Character> digraphs = new HashMap<String, Character>(defaultDigraphs.length);
+  /**
+   * Returns the character of the digraph, -1 if there is no such digraph.
+   */
+  private int findDigraph(char ch1, char ch2) {
+    final int slot = findSlot(ch1 << 16 | ch2);
+    return digraphKeys[slot] != 0 ? digraphValues[slot] : -1;
+  }
+
+  /**
+   * Returns the slot of the key or the empty slot where it belongs. The table is never more than half full, so
+   * probing always stops.
+   */
+  private int findSlot(int key) {
+    final int mask = digraphKeys.length - 1;
+    int slot = (key * 0x9E3779B9) >>> digraphShift;
+    while (digraphKeys[slot] != 0 && digraphKeys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static final int INITIAL_TABLE_SIZE = 4096;
+
+  /**
+   * Open addressing table of the digraphs, the key of a digraph packs its two characters as (ch1 << 16 | ch2). Digraph
+   * characters are never NUL, so 0 marks an empty slot.
+   */
+  @NotNull private int[] digraphKeys = new int[INITIAL_TABLE_SIZE];
+  @NotNull private char[] digraphValues = new char[INITIAL_TABLE_SIZE];
+  private int digraphShift = Integer.numberOfLeadingZeros(INITIAL_TABLE_SIZE) + 1;
+  private int digraphCount;
   @NotNull private final TreeMap<Character, String> keys = new TreeMap<Character, String>();
 
   private static final char defaultDigraphs[] = {
@@ -26,6 +26,7 @@ import com.intellij.openapi.editor.colors.EditorColors;
 import com.intellij.openapi.editor.colors.EditorFontType;
 import com.intellij.openapi.editor.event.*;
 import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.ex.EditorGutterComponentEx;
 import com.intellij.openapi.project.Project;
 import com.maddyhome.idea.vim.EventFacade;
 import com.maddyhome.idea.vim.KeyHandler;
@@ -41,6 +42,8 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -59,7 +62,10 @@ public class EditorGroup {
   private final CaretListener myLineNumbersCaretListener = new CaretAdapter() {
     @Override
     public void caretPositionChanged(CaretEvent e) {
-      updateLineNumbers(e.getEditor());
+      // Only relative line numbers depend on the caret and they don't change while the caret stays on its line
+      if (e.getOldPosition().line != e.getNewPosition().line) {
+        repaintRelativeLineNumbers(e.getEditor());
+      }
     }
   };
 
@@ -150,7 +156,7 @@ public class EditorGroup {
     editor.getCaretModel().removeCaretListener(myLineNumbersCaretListener);
     EditorData.setEditorGroup(editor, false);
 
-    editor.getGutter().closeAllAnnotations();
+    closeRelativeLineNumbers(editor);
 
     final Project project = editor.getProject();
     if (project == null || project.isDisposed()) return;
@@ -181,13 +187,40 @@ public class EditorGroup {
       });
     }
 
+    // The width of the numbers may change with the options, so the annotation is laid out again
+    closeRelativeLineNumbers(editor);
     if (relativeLineNumber) {
-      final EditorGutter gutter = editor.getGutter();
-      gutter.closeAllAnnotations();
+      editor.getGutter().registerTextAnnotation(myLineNumbersGutterProvider);
+    }
+  }
+
+  /**
+   * Repaints the visible part of the relative line numbers, the width of the annotation doesn't depend on the caret
+   * so there is no need to lay out the gutter again.
+   */
+  private void repaintRelativeLineNumbers(@NotNull Editor editor) {
+    if (!EditorData.isFileEditor(editor) || !Options.getInstance().isSet(Options.RELATIVE_NUMBER)) {
+      return;
+    }
+
+    final EditorGutterComponentEx gutter = (EditorGutterComponentEx)editor.getGutter();
+    if (gutter.getTextAnnotations().contains(myLineNumbersGutterProvider)) {
+      final Rectangle visibleArea = editor.getScrollingModel().getVisibleArea();
+      gutter.repaint(0, visibleArea.y, gutter.getWidth(), visibleArea.height);
+    }
+    else {
+      // The annotation has been closed by someone else, e.g. by closing the VCS annotations
       gutter.registerTextAnnotation(myLineNumbersGutterProvider);
     }
   }
 
+  private void closeRelativeLineNumbers(@NotNull Editor editor) {
+    final EditorGutterComponentEx gutter = (EditorGutterComponentEx)editor.getGutter();
+    if (gutter.getTextAnnotations().contains(myLineNumbersGutterProvider)) {
+      gutter.closeTextAnnotations(Collections.singletonList(myLineNumbersGutterProvider));
+    }
+  }
+
   private void setCursors(boolean isBlock) {
     Editor[] editors = EditorFactory.getInstance().getAllEditors();
     for (Editor editor : editors) {
@@ -276,10 +309,32 @@ public class EditorGroup {
       return Math.abs(currentVisualLine - visualLine);
     }
 
+    /**
+     * Returns the line number padded to the width of the largest line number of the editor, so that all the lines of
+     * the annotation have the same width.
+     */
+    @NotNull
     private String lineNumberToString(int lineNumber, @NotNull Editor editor) {
-      final int lineCount = editor.getDocument().getLineCount();
-      final int digitsCount = (int)Math.ceil(Math.log10(lineCount));
-      return StringHelper.leftJustify("" + lineNumber, digitsCount, ' ');
+      int digitsCount = 1;
+      for (int n = editor.getDocument().getLineCount(); n >= 10; n /= 10) {
+        digitsCount++;
+      }
+
+      if (lineNumber >= CACHED_NUMBERS) {
+        return StringHelper.leftJustify(Integer.toString(lineNumber), digitsCount, ' ');
+      }
+      if (paddedNumbers.length <= digitsCount) {
+        paddedNumbers = Arrays.copyOf(paddedNumbers, digitsCount + 1);
+      }
+      String[] numbers = paddedNumbers[digitsCount];
+      if (numbers == null) {
+        numbers = paddedNumbers[digitsCount] = new String[CACHED_NUMBERS];
+      }
+      String res = numbers[lineNumber];
+      if (res == null) {
+        res = numbers[lineNumber] = StringHelper.leftJustify(Integer.toString(lineNumber), digitsCount, ' ');
+      }
+      return res;
     }
 
     @Nullable
@@ -313,5 +368,16 @@ public class EditorGroup {
     @Override
     public void gutterClosed() {
     }
+
+    /**
+     * Relative line numbers rarely exceed the height of the window, larger numbers are not worth caching.
+     */
+    private static final int CACHED_NUMBERS = 1024;
+
+    /**
+     * Padded line numbers indexed by their width and their value. Gutter annotations are painted on the event dispatch
+     * thread only, so the table needs no synchronization.
+     */
+    @NotNull private String[][] paddedNumbers = new String[0][];
   }
 }
@@ -30,13 +30,14 @@ import com.intellij.openapi.fileEditor.impl.EditorTabbedContainer;
 import com.intellij.openapi.fileEditor.impl.EditorWindow;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.maddyhome.idea.vim.KeyHandler;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.CommandState;
@@ -50,7 +51,14 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class FileGroup {
   public FileGroup() {
@@ -110,12 +118,17 @@ public class FileGroup {
         if (logger.isDebugEnabled()) {
           logger.debug("root[" + i + "] = " + roots[i].getPath());
         }
-        found = findFile(roots[i], filename);
+        found = roots[i].findFileByRelativePath(filename);
         if (found != null) {
           break;
         }
       }
 
+      // Only a plain file name can match the name of a file below a content root
+      if (found == null && filename.indexOf('/') < 0 && filename.indexOf(File.separatorChar) < 0) {
+        found = findFileByName(filename, project, roots);
+      }
+
       if (found == null) {
         found = LocalFileSystem.getInstance().findFileByIoFile(new File(filename));
       }
@@ -124,25 +137,81 @@ public class FileGroup {
     return found;
   }
 
+  /**
+   * Finds a file with the given name below the content roots. The project's file name index is used when it is
+   * available. The roots are walked while the project is still being indexed, and for the files the index doesn't
+   * cover, such as the ones in excluded folders. Both ways pick the same file when there are several.
+   */
   @Nullable
-  private VirtualFile findFile(@NotNull VirtualFile root, @NotNull String filename) {
-    VirtualFile res = root.findFileByRelativePath(filename);
-    if (res != null) {
-      return res;
+  private VirtualFile findFileByName(@NotNull String filename, @NotNull Project project, @NotNull VirtualFile[] roots) {
+    if (!DumbService.isDumb(project)) {
+      final GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+      final Collection<VirtualFile> files = FilenameIndex.getVirtualFilesByName(project, filename, scope);
+      for (VirtualFile root : roots) {
+        VirtualFile res = null;
+        for (VirtualFile file : files) {
+          if (VfsUtilCore.isAncestor(root, file, false) && (res == null || NESTING_ORDER.compare(file, res) < 0)) {
+            res = file;
+          }
+        }
+        if (res != null) {
+          if (files.size() > 1) {
+            VimPlugin.showMessage(files.size() + " files named " + filename + " found, using " +
+                                  VfsUtilCore.getRelativePath(res, root, File.separatorChar));
+          }
+          return res;
+        }
+      }
+    }
+
+    for (VirtualFile root : roots) {
+      final VirtualFile res = findFile(root, filename);
+      if (res != null) {
+        return res;
+      }
+    }
+    return null;
+  }
+
+  private static int getDepth(@NotNull VirtualFile file) {
+    int depth = 0;
+    for (VirtualFile parent = file.getParent(); parent != null; parent = parent.getParent()) {
+      depth++;
     }
-    final Ref<VirtualFile> result = Ref.create();
-    final VirtualFileVisitor<Object> visitor = new VirtualFileVisitor<Object>() {
-      @Override
-      public boolean visitFile(@NotNull VirtualFile file) {
-        if (file.getName().equals(filename)) {
-          result.set(file);
-          return false;
+    return depth;
+  }
+
+  /**
+   * Walks the root level by level and returns the first file in {@link #NESTING_ORDER} on the first level that has
+   * one, the same file the index lookup picks.
+   */
+  @Nullable
+  private static VirtualFile findFile(@NotNull VirtualFile root, @NotNull String filename) {
+    final Set<VirtualFile> visited = new HashSet<>();
+    List<VirtualFile> level = Collections.singletonList(root);
+    while (!level.isEmpty()) {
+      VirtualFile res = null;
+      final List<VirtualFile> next = new ArrayList<>();
+      for (VirtualFile dir : level) {
+        for (VirtualFile child : dir.getChildren()) {
+          if (child.getName().equals(filename) && (res == null || NESTING_ORDER.compare(child, res) < 0)) {
+            res = child;
+          }
+          if (child.isDirectory()) {
+            // Symbolic links can make a directory its own descendant
+            final VirtualFile canonical = child.getCanonicalFile();
+            if (visited.add(canonical != null ? canonical : child)) {
+              next.add(child);
+            }
+          }
         }
-        return true;
       }
-    };
-    VfsUtilCore.visitChildrenRecursively(root, visitor);
-    return result.get();
+      if (res != null) {
+        return res;
+      }
+      level = next;
+    }
+    return null;
   }
 
   /**
@@ -438,5 +507,13 @@ public class FileGroup {
   }
 
   @NotNull private static final HashMap<FileEditorManager, VirtualFile> lastSelections = new HashMap<>();
+  // The least nested file first, the files at the same depth by path
+  @NotNull private static final Comparator<VirtualFile> NESTING_ORDER = new Comparator<VirtualFile>() {
+    @Override
+    public int compare(VirtualFile f1, VirtualFile f2) {
+      final int res = Integer.compare(getDepth(f1), getDepth(f2));
+      return res != 0 ? res : f1.getPath().compareTo(f2.getPath());
+    }
+  };
   @NotNull private static final Logger logger = Logger.getInstance(FileGroup.class.getName());
 }
@@ -26,9 +26,12 @@ import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class HistoryGroup {
   public static final String SEARCH = "search";
@@ -87,6 +90,14 @@ public class HistoryGroup {
     return res;
   }
 
+  /**
+   * Returns the entries that start with the prefix from the oldest to the newest.
+   */
+  @NotNull
+  public List<HistoryEntry> getEntries(String key, @NotNull String prefix) {
+    return blocks(key).getEntries(prefix);
+  }
+
   private HistoryBlock blocks(String key) {
     HistoryBlock block = histories.get(key);
     if (block == null) {
@@ -167,29 +178,54 @@ public class HistoryGroup {
     return opt.value();
   }
 
+  /**
+   * The entries of a history from the oldest to the newest. They are kept in a linked hash map, so moving a repeated
+   * entry to the end and dropping the oldest entry don't depend on the size of the history. A second map sorted by
+   * text finds the entries that start with a prefix.
+   */
   private static class HistoryBlock {
     public void addEntry(@NotNull String text) {
-      for (int i = 0; i < entries.size(); i++) {
-        HistoryEntry entry = entries.get(i);
-        if (text.equals(entry.getEntry())) {
-          entries.remove(i);
-          break;
-        }
-      }
-
-      entries.add(new HistoryEntry(++counter, text));
-
-      if (entries.size() > maxLength()) {
-        entries.remove(0);
-      }
+      final HistoryEntry entry = new HistoryEntry(++counter, text);
+      entries.remove(text);
+      entries.put(text, entry);
+      sortedEntries.put(text, entry);
     }
 
     @NotNull
     public List<HistoryEntry> getEntries() {
-      return entries;
+      return new ArrayList<HistoryEntry>(entries.values());
     }
 
-    @NotNull private final List<HistoryEntry> entries = new ArrayList<HistoryEntry>();
+    @NotNull
+    public List<HistoryEntry> getEntries(@NotNull String prefix) {
+      final List<HistoryEntry> res = new ArrayList<HistoryEntry>();
+      for (Map.Entry<String, HistoryEntry> entry : sortedEntries.tailMap(prefix, true).entrySet()) {
+        if (!entry.getKey().startsWith(prefix)) {
+          break;
+        }
+        res.add(entry.getValue());
+      }
+      res.sort(new Comparator<HistoryEntry>() {
+        @Override
+        public int compare(HistoryEntry e1, HistoryEntry e2) {
+          return Integer.compare(e1.getNumber(), e2.getNumber());
+        }
+      });
+
+      return res;
+    }
+
+    @NotNull private final Map<String, HistoryEntry> entries = new LinkedHashMap<String, HistoryEntry>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, HistoryEntry> eldest) {
+        if (size() > maxLength()) {
+          sortedEntries.remove(eldest.getKey());
+          return true;
+        }
+        return false;
+      }
+    };
+    @NotNull private final TreeMap<String, HistoryEntry> sortedEntries = new TreeMap<String, HistoryEntry>();
     private int counter;
   }
 
@@ -66,6 +66,8 @@ public class KeyGroup {
   @NotNull private final HashMap<MappingMode, RootNode> keyRoots = new HashMap<MappingMode, RootNode>();
   @NotNull private final Map<MappingMode, KeyMapping> keyMappings = new HashMap<MappingMode, KeyMapping>();
   @Nullable private OperatorFunction operatorFunction = null;
+  private int mappingBatchDepth = 0;
+  private boolean requiredShortcutKeysChanged = false;
 
   public void registerRequiredShortcutKeys(@NotNull Editor editor) {
     final Set<KeyStroke> requiredKeys = VimPlugin.getKey().getRequiredShortcutKeys();
@@ -119,10 +121,35 @@ public class KeyGroup {
       }
     }
     if (requiredShortcutKeys.size() != oldSize) {
-      for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
-        unregisterShortcutKeys(editor);
-        registerRequiredShortcutKeys(editor);
+      if (mappingBatchDepth > 0) {
+        requiredShortcutKeysChanged = true;
       }
+      else {
+        updateRequiredShortcutKeys();
+      }
+    }
+  }
+
+  /**
+   * Starts adding a batch of key mappings, e.g. from a vimrc file. The shortcut keys of the open editors are updated
+   * once when the batch is finished instead of after every mapping that needs a new shortcut key.
+   */
+  public void startMappingBatch() {
+    mappingBatchDepth++;
+  }
+
+  public void finishMappingBatch() {
+    mappingBatchDepth--;
+    if (mappingBatchDepth == 0 && requiredShortcutKeysChanged) {
+      requiredShortcutKeysChanged = false;
+      updateRequiredShortcutKeys();
+    }
+  }
+
+  private void updateRequiredShortcutKeys() {
+    for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+      unregisterShortcutKeys(editor);
+      registerRequiredShortcutKeys(editor);
     }
   }
 
@@ -36,6 +36,7 @@ import com.maddyhome.idea.vim.EventFacade;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.Command;
 import com.maddyhome.idea.vim.command.CommandState;
+import com.maddyhome.idea.vim.common.FileLocation;
 import com.maddyhome.idea.vim.common.Jump;
 import com.maddyhome.idea.vim.common.Mark;
 import com.maddyhome.idea.vim.common.TextRange;
@@ -219,6 +220,11 @@ public class MarkGroup {
       fmarks.put(ch, mark);
       Mark oldMark = globalMarks.put(ch, mark);
       if (oldMark != null) {
+        // Remove the old mark from its file before it is cleared, cleared marks would break the line order
+        final FileMarks<Character, Mark> oldFileMarks = fileMarks.get(oldMark.getFilename());
+        if (oldFileMarks != null && oldFileMarks.get(ch) == oldMark) {
+          oldFileMarks.remove(ch);
+        }
         oldMark.clear();
       }
     }
@@ -304,6 +310,8 @@ public class MarkGroup {
       fmarks.remove(new Character(ch));
     }
     else if (GLOBAL_MARKS.indexOf(ch) >= 0) {
+      HashMap fmarks = getFileMarks(mark.getFilename());
+      fmarks.remove(new Character(ch));
       globalMarks.remove(new Character(ch));
     }
 
@@ -353,29 +361,6 @@ public class MarkGroup {
     return getFileMarks(vf.getPath());
   }
 
-  @Nullable
-  private HashMap<Character, Mark> getAllFileMarks(@NotNull final Document doc) {
-    VirtualFile vf = FileDocumentManager.getInstance().getFile(doc);
-    if (vf == null) {
-      return null;
-    }
-
-    HashMap<Character, Mark> res = new HashMap<Character, Mark>();
-    FileMarks<Character, Mark> fileMarks = getFileMarks(doc);
-    if (fileMarks != null) {
-      res.putAll(fileMarks);
-    }
-
-    for (Character ch : globalMarks.keySet()) {
-      Mark mark = globalMarks.get(ch);
-      if (vf.getPath().equals(mark.getFilename())) {
-        res.put(ch, mark);
-      }
-    }
-
-    return res;
-  }
-
   /**
    * Gets the map of marks for the specified file
    *
@@ -546,92 +531,174 @@ public class MarkGroup {
   }
 
   /**
-   * This updates all the marks for a file whenever text is deleted from the file. If the line that contains a mark
-   * is completely deleted then the mark is deleted too. If the deleted text is before the marked line, the mark is
-   * moved up by the number of deleted lines.
+   * This updates all the marks and jumps for a file whenever text is deleted from the file. If the line that contains
+   * a mark is completely deleted then the mark is deleted too. If the deleted text is before the marked line, the mark
+   * is moved up by the number of deleted lines. Jumps are never deleted, a jump on a deleted line is moved to the
+   * first line of the deletion instead.
+   * <p>
+   * Only the marks on or after the first deleted line are looked at, marks before it can't be affected.
    *
-   * @param editor      The modified editor
-   * @param marks       The editor's marks to update
-   * @param delStartOff The offset within the editor where the deletion occurred
+   * @param doc         The modified document
+   * @param delStartOff The offset within the document where the deletion occurred
    * @param delLength   The length of the deleted text
    */
-  public static void updateMarkFromDelete(@Nullable Editor editor, @Nullable HashMap<Character, Mark> marks, int delStartOff, int delLength) {
-    // Skip all this work if there are no marks
-    if (marks != null && marks.size() > 0 && editor != null) {
-      // Calculate the logical position of the start and end of the deleted text
-      int delEndOff = delStartOff + delLength - 1;
-      LogicalPosition delStart = editor.offsetToLogicalPosition(delStartOff);
-      LogicalPosition delEnd = editor.offsetToLogicalPosition(delEndOff + 1);
-      if (logger.isDebugEnabled()) logger.debug("mark delete. delStart = " + delStart + ", delEnd = " + delEnd);
+  private void updateMarksFromDelete(@NotNull Document doc, int delStartOff, int delLength) {
+    final String filename = getFilename(doc);
+    if (filename == null) {
+      return;
+    }
+    final FileMarks<Character, Mark> marks = fileMarks.get(filename);
+    // Skip all this work if there are no marks or jumps
+    if ((marks == null || marks.isEmpty()) && !hasJumps(filename)) {
+      return;
+    }
 
+    // Calculate the lines of the start and end of the deleted text
+    final int delEndOff = delStartOff + delLength - 1;
+    final int delStartLine = doc.getLineNumber(delStartOff);
+    final int delEndLine = doc.getLineNumber(delEndOff + 1);
+    final int lines = delEndLine - delStartLine;
+    if (logger.isDebugEnabled()) logger.debug("mark delete. delStartLine = " + delStartLine + ", delEndLine = " + delEndLine);
+
+    if (marks != null) {
+      final List<Mark> byLine = marks.getMarksByLine();
       // Now analyze each mark to determine if it needs to be updated or removed
-      for (Character ch : marks.keySet()) {
-        Mark mark = marks.get(ch);
+      for (int i = firstOnOrAfterLine(byLine, delStartLine); i < byLine.size(); i++) {
+        final Mark mark = byLine.get(i);
+        final int line = mark.getLogicalLine();
 
         if (logger.isDebugEnabled()) logger.debug("mark = " + mark);
         // If the end of the deleted text is prior to the marked line, simply shift the mark up by the
         // proper number of lines.
-        if (delEnd.line < mark.getLogicalLine()) {
-          int lines = delEnd.line - delStart.line;
+        if (delEndLine < line) {
           if (logger.isDebugEnabled()) logger.debug("Shifting mark by " + lines + " lines");
-          mark.setLogicalLine(mark.getLogicalLine() - lines);
+          mark.setLogicalLine(line - lines);
         }
-        // If the deleted text begins before the mark and ends after the mark then it may be shifted or deleted
-        else if (delStart.line <= mark.getLogicalLine() && delEnd.line >= mark.getLogicalLine()) {
-          int markLineStartOff = EditorHelper.getLineStartOffset(editor, mark.getLogicalLine());
-          int markLineEndOff = EditorHelper.getLineEndOffset(editor, mark.getLogicalLine(), true);
+        // The deleted text begins before the mark and ends after the mark so it may be shifted or deleted
+        else {
+          int markLineStartOff = doc.getLineStartOffset(line);
+          int markLineEndOff = doc.getLineEndOffset(line);
 
-          Command command = CommandState.getInstance(editor).getCommand();
+          Command command = CommandState.getInstance(getAnEditor(doc)).getCommand();
           // If text is being changed from the start of the mark line (a special case for mark deletion)
           boolean changeFromMarkLineStart = command != null && command.getType() == Command.Type.CHANGE
                                             && delStartOff == markLineStartOff;
           // If the marked line is completely within the deleted text, remove the mark (except the special case)
           if (delStartOff <= markLineStartOff && delEndOff >= markLineEndOff && !changeFromMarkLineStart) {
-            VimPlugin.getMark().removeMark(ch, mark);
+            removeMark(mark.getKey(), mark);
             logger.debug("Removed mark");
           }
           // The deletion only covers part of the marked line so shift the mark only if the deletion begins
           // on a line prior to the marked line (which means the deletion must end on the marked line).
-          else if (delStart.line < mark.getLogicalLine()) {
+          else if (delStartLine < line) {
             // shift mark
-            mark.setLogicalLine(delStart.line);
-            if (logger.isDebugEnabled()) logger.debug("Shifting mark to line " + delStart.line);
+            mark.setLogicalLine(delStartLine);
+            if (logger.isDebugEnabled()) logger.debug("Shifting mark to line " + delStartLine);
           }
         }
       }
     }
+
+    for (Jump jump : jumps) {
+      if (filename.equals(jump.getFilename())) {
+        final int line = jump.getLogicalLine();
+        if (delEndLine < line) {
+          jump.setLogicalLine(line - lines);
+        }
+        else if (delStartLine < line) {
+          jump.setLogicalLine(delStartLine);
+        }
+      }
+    }
   }
 
   /**
-   * This updates all the marks for a file whenever text is inserted into the file. If the line that contains a mark
-   * that is after the start of the insertion point, shift the mark by the number of new lines added.
+   * This updates all the marks and jumps for a file whenever text is inserted into the file. If the line that
+   * contains a mark is after the start of the insertion point, shift the mark by the number of new lines added.
    *
-   * @param editor      The editor that was updated
-   * @param marks       The editor's marks
+   * @param doc         The document that was updated
    * @param insStartOff The insertion point
    * @param insLength   The length of the insertion
    */
-  public static void updateMarkFromInsert(@Nullable Editor editor, @Nullable HashMap<Character, Mark> marks, int insStartOff, int insLength) {
-    if (marks != null && marks.size() > 0 && editor != null) {
-      int insEndOff = insStartOff + insLength;
-      LogicalPosition insStart = editor.offsetToLogicalPosition(insStartOff);
-      LogicalPosition insEnd = editor.offsetToLogicalPosition(insEndOff);
-      if (logger.isDebugEnabled()) logger.debug("mark insert. insStart = " + insStart + ", insEnd = " + insEnd);
-      int lines = insEnd.line - insStart.line;
-      if (lines == 0) return;
-
-      for (Mark mark : marks.values()) {
-        if (logger.isDebugEnabled()) logger.debug("mark = " + mark);
-        // Shift the mark if the insertion began on a line prior to the marked line.
-        if (insStart.line < mark.getLogicalLine()) {
-          mark.setLogicalLine(mark.getLogicalLine() + lines);
-          if (logger.isDebugEnabled()) logger.debug("Shifting mark by " + lines + " lines");
-        }
+  private void updateMarksFromInsert(@NotNull Document doc, int insStartOff, int insLength) {
+    final String filename = getFilename(doc);
+    if (filename == null) {
+      return;
+    }
+    final FileMarks<Character, Mark> marks = fileMarks.get(filename);
+    if ((marks == null || marks.isEmpty()) && !hasJumps(filename)) {
+      return;
+    }
+
+    final int insStartLine = doc.getLineNumber(insStartOff);
+    final int insEndLine = doc.getLineNumber(insStartOff + insLength);
+    if (logger.isDebugEnabled()) logger.debug("mark insert. insStartLine = " + insStartLine + ", insEndLine = " + insEndLine);
+    final int lines = insEndLine - insStartLine;
+    if (lines == 0) return;
+
+    if (marks != null) {
+      // Shift the marks if the insertion began on a line prior to the marked line.
+      final List<Mark> byLine = marks.getMarksByLine();
+      for (int i = firstOnOrAfterLine(byLine, insStartLine + 1); i < byLine.size(); i++) {
+        final Mark mark = byLine.get(i);
+        if (logger.isDebugEnabled()) logger.debug("Shifting mark " + mark + " by " + lines + " lines");
+        mark.setLogicalLine(mark.getLogicalLine() + lines);
+      }
+    }
+
+    for (Jump jump : jumps) {
+      if (filename.equals(jump.getFilename()) && insStartLine < jump.getLogicalLine()) {
+        jump.setLogicalLine(jump.getLogicalLine() + lines);
+      }
+    }
+  }
+
+  private boolean hasJumps(@NotNull String filename) {
+    for (Jump jump : jumps) {
+      if (filename.equals(jump.getFilename())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the index of the first location on or after the line in a list of locations ordered by line.
+   */
+  private static int firstOnOrAfterLine(@NotNull List<? extends FileLocation> locations, int line) {
+    int low = 0;
+    int high = locations.size();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (locations.get(mid).getLogicalLine() < line) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
       }
     }
+    return low;
+  }
+
+  @Nullable
+  private static String getFilename(@NotNull Document doc) {
+    final VirtualFile vf = FileDocumentManager.getInstance().getFile(doc);
+    return vf != null ? vf.getPath() : null;
+  }
+
+  @Nullable
+  private static Editor getAnEditor(@NotNull Document doc) {
+    Editor[] editors = EditorFactory.getInstance().getEditors(doc);
+
+    if (editors.length > 0) {
+      return editors[0];
+    }
+    else {
+      return null;
+    }
   }
 
-  private static class FileMarks<K, V> extends HashMap<K, V> {
+  private static class FileMarks<K, V extends FileLocation> extends HashMap<K, V> {
     public Date getTimestamp() {
       return timestamp;
     }
@@ -642,10 +709,34 @@ public class MarkGroup {
 
     public V put(K key, V value) {
       timestamp = new Date();
+      marksByLine = null;
       return super.put(key, value);
     }
 
+    public V remove(Object key) {
+      marksByLine = null;
+      return super.remove(key);
+    }
+
+    /**
+     * Gets the marks of the file ordered by line. A document change shifts all the marks after the change by the
+     * same number of lines, so the order stays valid until a mark is set or removed.
+     */
+    @NotNull
+    public List<V> getMarksByLine() {
+      if (marksByLine == null) {
+        marksByLine = new ArrayList<V>(values());
+        Collections.sort(marksByLine, new Comparator<V>() {
+          public int compare(@NotNull V o1, @NotNull V o2) {
+            return o1.getLogicalLine() - o2.getLogicalLine();
+          }
+        });
+      }
+      return marksByLine;
+    }
+
     private Date timestamp = new Date();
+    @Nullable private List<V> marksByLine;
   }
 
   /**
@@ -660,7 +751,7 @@ public class MarkGroup {
 
     /**
      * This event indicates that a document is about to be changed. We use this event to update all the
-     * editor's marks if text is about to be deleted.
+     * editor's marks and jumps if text is about to be deleted.
      *
      * @param event The change event
      */
@@ -670,15 +761,12 @@ public class MarkGroup {
       if (logger.isDebugEnabled()) logger.debug("MarkUpdater before, event = " + event);
       if (event.getOldLength() == 0) return;
 
-      Document doc = event.getDocument();
-      updateMarkFromDelete(getAnEditor(doc), VimPlugin.getMark().getAllFileMarks(doc), event.getOffset(),
-                           event.getOldLength());
-      // TODO - update jumps
+      VimPlugin.getMark().updateMarksFromDelete(event.getDocument(), event.getOffset(), event.getOldLength());
     }
 
     /**
      * This event indicates that a document was just changed. We use this event to update all the editor's
-     * marks if text was just added.
+     * marks and jumps if text was just added.
      *
      * @param event The change event
      */
@@ -688,22 +776,7 @@ public class MarkGroup {
       if (logger.isDebugEnabled()) logger.debug("MarkUpdater after, event = " + event);
       if (event.getNewLength() == 0 || (event.getNewLength() == 1 && event.getNewFragment().charAt(0) != '\n')) return;
 
-      Document doc = event.getDocument();
-      updateMarkFromInsert(getAnEditor(doc), VimPlugin.getMark().getAllFileMarks(doc), event.getOffset(),
-                           event.getNewLength());
-      // TODO - update jumps
-    }
-
-    @Nullable
-    private Editor getAnEditor(@NotNull Document doc) {
-      Editor[] editors = EditorFactory.getInstance().getEditors(doc);
-
-      if (editors.length > 0) {
-        return editors[0];
-      }
-      else {
-        return null;
-      }
+      VimPlugin.getMark().updateMarksFromInsert(event.getDocument(), event.getOffset(), event.getNewLength());
     }
   }
 
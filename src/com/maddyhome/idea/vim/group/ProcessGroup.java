@@ -19,6 +19,7 @@
 package com.maddyhome.idea.vim.group;
 
 import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.util.text.CharSequenceReader;
@@ -30,6 +31,8 @@ import com.maddyhome.idea.vim.command.MappingMode;
 import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.ex.CommandParser;
 import com.maddyhome.idea.vim.ex.ExException;
+import com.maddyhome.idea.vim.helper.MessageHelper;
+import com.maddyhome.idea.vim.helper.Msg;
 import com.maddyhome.idea.vim.helper.UiHelper;
 import com.maddyhome.idea.vim.ui.ExEntryPanel;
 import org.jetbrains.annotations.NotNull;
@@ -37,6 +40,11 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.io.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  *
@@ -193,37 +201,123 @@ public class ProcessGroup {
   }
 
   @NotNull
-  public String executeCommand(@NotNull String command, @Nullable CharSequence input) throws IOException {
+  public String executeCommand(@NotNull String command, @Nullable final CharSequence input) throws IOException {
     if (logger.isDebugEnabled()) {
       logger.debug("command=" + command);
     }
 
     final Process process = Runtime.getRuntime().exec(command);
 
-    if (input != null) {
-      final BufferedWriter outputWriter = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-      copy(new CharSequenceReader(input), outputWriter);
-      outputWriter.close();
-    }
+    // The input is written, the error output is drained and the output is read on separate threads, otherwise the
+    // command blocks as soon as it fills one of the pipes
+    final Future<?> inputPump = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+        try {
+          if (input != null) {
+            copy(new CharSequenceReader(input), writer);
+          }
+        }
+        catch (IOException e) {
+          // The command doesn't have to read all of its input
+          logger.debug(e);
+        }
+        finally {
+          closeQuietly(writer);
+        }
+      }
+    });
+    final Future<?> errorPump = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        final Reader reader = new InputStreamReader(process.getErrorStream());
+        try {
+          final char[] buf = new char[BUFFER_SIZE];
+          //noinspection StatementWithEmptyBody
+          while (reader.read(buf) != -1) {
+          }
+        }
+        catch (IOException e) {
+          logger.debug(e);
+        }
+        finally {
+          closeQuietly(reader);
+        }
+      }
+    });
+
+    // Reading the output here would block without a way to stop a command that hangs without writing anything
+    final Future<String> outputPump = ApplicationManager.getApplication().executeOnPooledThread(new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        final StringBuilder output = new StringBuilder();
+        final Reader reader = new InputStreamReader(process.getInputStream());
+        try {
+          final char[] buf = new char[BUFFER_SIZE];
+          int cnt;
+          while ((cnt = reader.read(buf)) != -1) {
+            output.append(buf, 0, cnt);
+          }
+        }
+        finally {
+          closeQuietly(reader);
+        }
+        return output.toString();
+      }
+    });
 
-    final BufferedReader inputReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-    final StringWriter writer = new StringWriter();
-    copy(inputReader, writer);
-    writer.close();
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(COMMAND_TIMEOUT);
+    final String output;
+    boolean completed = false;
+    try {
+      output = outputPump.get(COMMAND_TIMEOUT, TimeUnit.SECONDS);
+      inputPump.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+      errorPump.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+      completed = true;
+    }
+    catch (TimeoutException e) {
+      throw new IOException(MessageHelper.message(Msg.e_cmdtimeout, COMMAND_TIMEOUT, command));
+    }
+    catch (InterruptedException e) {
+      throw new InterruptedIOException(command);
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    finally {
+      if (!completed) {
+        // Destroying the process closes its pipes, which ends the pumps that are still running
+        process.destroy();
+      }
+    }
 
     lastCommand = command;
-    return writer.toString();
+    return output;
   }
 
   private void copy(@NotNull Reader from, @NotNull Writer to) throws IOException {
-    char[] buf = new char[2048];
+    char[] buf = new char[BUFFER_SIZE];
     int cnt;
     while ((cnt = from.read(buf)) != -1) {
       to.write(buf, 0, cnt);
     }
   }
 
+  private static void closeQuietly(@NotNull Closeable closeable) {
+    try {
+      closeable.close();
+    }
+    catch (IOException e) {
+      logger.debug(e);
+    }
+  }
+
   private String lastCommand;
 
+  private static final int BUFFER_SIZE = 8192;
+  // Seconds a command may run before it is destroyed, the editor is blocked while it runs
+  private static final int COMMAND_TIMEOUT = 60;
+
   private static final Logger logger = Logger.getInstance(ProcessGroup.class.getName());
 }
@@ -18,12 +18,15 @@
 package com.maddyhome.idea.vim.group;
 
 import com.google.common.collect.Lists;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.colors.EditorColors;
 import com.intellij.openapi.editor.event.DocumentAdapter;
 import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.ex.MarkupModelEx;
 import com.intellij.openapi.editor.markup.HighlighterLayer;
 import com.intellij.openapi.editor.markup.HighlighterTargetArea;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
@@ -31,9 +34,16 @@ import com.intellij.openapi.editor.markup.TextAttributes;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.FileEditorManagerAdapter;
 import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.progress.util.ReadTask;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.util.Ref;
+import com.intellij.util.DocumentUtil;
 import com.intellij.util.Processor;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.Command;
@@ -48,7 +58,9 @@ import com.maddyhome.idea.vim.option.Options;
 import com.maddyhome.idea.vim.regexp.CharHelper;
 import com.maddyhome.idea.vim.regexp.CharPointer;
 import com.maddyhome.idea.vim.regexp.CharacterClasses;
+import com.maddyhome.idea.vim.regexp.LiteralSearcher;
 import com.maddyhome.idea.vim.regexp.RegExp;
+import com.maddyhome.idea.vim.regexp.RegExpCache;
 import com.maddyhome.idea.vim.ui.ExEntryPanel;
 import com.maddyhome.idea.vim.ui.ModalEntry;
 import org.jdom.Element;
@@ -269,7 +281,7 @@ public class SearchGroup {
     RegExp sp;
     RegExp.regmmatch_T regmatch = new RegExp.regmmatch_T();
     sp = new RegExp();
-    regmatch.regprog = sp.vim_regcomp(pattern, 1);
+    regmatch.regprog = RegExpCache.getInstance().vim_regcomp(sp, pattern, 1);
     if (regmatch.regprog == null) {
       if (do_error) {
         VimPlugin.showMessage(MessageHelper.message(Msg.e_invcmd));
@@ -317,6 +329,8 @@ public class SearchGroup {
     boolean firstMatch = true;
     boolean got_quit = false;
     int lcount = EditorHelper.getLineCount(editor);
+    // Replacements that don't need a confirmation are collected and applied together after the search
+    final List<SubstituteEdit> edits = new ArrayList<SubstituteEdit>();
     for (int lnum = line1; lnum <= line2 && !got_quit; ) {
       CharacterPosition newpos = null;
       int nmatch = sp.vim_regexec_multi(regmatch, editor, lcount, lnum, searchcol);
@@ -371,7 +385,10 @@ public class SearchGroup {
             }
           }
 
-          if (doReplace) {
+          if (doReplace && !do_ask) {
+            edits.add(new SubstituteEdit(startoff, endoff, match));
+          }
+          else if (doReplace) {
             editor.getDocument().replaceString(startoff, endoff, match);
             lastMatch = startoff;
             newpos = EditorHelper.offsetToCharacterPosition(editor, newend);
@@ -404,6 +421,10 @@ public class SearchGroup {
       }
     }
 
+    if (!edits.isEmpty()) {
+      lastMatch = applySubstituteEdits(editor, edits);
+    }
+
     if (lastMatch != -1) {
       MotionGroup.moveCaret(editor, VimPlugin.getMotion()
         .moveCaretToLineStartSkipLeading(editor, editor.offsetToLogicalPosition(lastMatch).line
@@ -416,6 +437,35 @@ public class SearchGroup {
     return true;
   }
 
+  /**
+   * Applies the replacements of a substitute command in a single bulk update, whatever their number, so that the
+   * editors and the PSI are updated once for the whole command instead of once per match. The edits are applied from
+   * the last one to the first one, so the offsets of the edits that are still to be applied don't change, and each
+   * replacement only moves the marks after it like a separate change would.
+   *
+   * @return the offset of the last replacement in the changed document
+   */
+  private static int applySubstituteEdits(@NotNull Editor editor, @NotNull final List<SubstituteEdit> edits) {
+    final Document document = editor.getDocument();
+    int delta = 0;
+    for (int i = 0; i < edits.size() - 1; i++) {
+      final SubstituteEdit edit = edits.get(i);
+      delta += edit.replacement.length() - (edit.endOffset - edit.startOffset);
+    }
+
+    DocumentUtil.executeInBulk(document, edits.size() > 1, new Runnable() {
+      @Override
+      public void run() {
+        for (int i = edits.size() - 1; i >= 0; i--) {
+          final SubstituteEdit edit = edits.get(i);
+          document.replaceString(edit.startOffset, edit.endOffset, edit.replacement);
+        }
+      }
+    });
+
+    return edits.get(edits.size() - 1).startOffset + delta;
+  }
+
   @NotNull
   private static ReplaceConfirmationChoice confirmChoice(@NotNull Editor editor, @NotNull String match) {
     final Ref<ReplaceConfirmationChoice> result = Ref.create(ReplaceConfirmationChoice.QUIT);
@@ -595,7 +645,7 @@ public class SearchGroup {
         }
 
         removeSearchHighlight(editor);
-        highlightSearchLines(editor, lastSearch, 0, -1, shouldIgnoreCase(lastSearch, noSmartCase));
+        highlightSearchIncrementally(editor, lastSearch, shouldIgnoreCase(lastSearch, noSmartCase));
 
         EditorData.setLastSearch(editor, lastSearch);
       }
@@ -608,42 +658,70 @@ public class SearchGroup {
     }
   }
 
+  /**
+   * Finds the nearest match of the pattern after (or before) the offset, continuing at the other end of the file if
+   * 'wrapscan' is set. The search stops at the first match instead of looking for all the matches in the file.
+   */
   @Nullable
   public static TextRange findNext(@NotNull Editor editor, @NotNull String pattern, final int offset, boolean ignoreCase,
                                    final boolean forwards) {
-    final List<TextRange> results = findAll(editor, pattern, 0, -1, shouldIgnoreCase(pattern, ignoreCase));
-    if (results.isEmpty()) {
+    if (pattern.length() == 0) {
       return null;
     }
-    final int size = EditorHelper.getFileSize(editor);
-    final TextRange max = Collections.max(results, new Comparator<TextRange>() {
-      @Override
-      public int compare(TextRange r1, TextRange r2) {
-        final int d1 = distance(r1, offset, forwards, size);
-        final int d2 = distance(r2, offset, forwards, size);
-        if (d1 < 0 && d2 >= 0) {
-          return Integer.MAX_VALUE;
+
+    return findIt(editor, pattern, offset, 1, forwards ? 1 : -1, shouldIgnoreCase(pattern, ignoreCase),
+                  Options.getInstance().isSet("wrapscan"), false, true);
+  }
+
+  /**
+   * Finds the match shown by 'incsearch' for a pattern typed after a previous one.
+   * <p>
+   * Matches of a literal pattern are also matches of every literal pattern it extends, so a forward search can use
+   * the previous match: if that match is in a line after the one with the offset, the offset's line doesn't contain the
+   * new pattern and the new pattern matches there too, it is the new match. If the previous pattern wasn't found
+   * anywhere while 'wrapscan' is set, neither is the new one. Otherwise the file is searched with
+   * {@link #findNext(Editor, String, int, boolean, boolean)}, which checks the progress for cancellation.
+   *
+   * @param previousPattern The pattern searched for before from the same offset, null if there was none
+   * @param previousMatch   The match found for the previous pattern
+   */
+  @Nullable
+  public static TextRange findNextIncrementally(@NotNull Editor editor, @NotNull String pattern, int offset,
+                                                boolean ignoreCase, boolean forwards, @Nullable String previousPattern,
+                                                @Nullable TextRange previousMatch) {
+    if (forwards && previousPattern != null && !previousPattern.isEmpty() && pattern.startsWith(previousPattern) &&
+        isLiteralPattern(pattern)) {
+      if (previousMatch == null) {
+        if (Options.getInstance().isSet("wrapscan")) {
+          return null;
         }
-        return d2 - d1;
       }
-    });
-    if (!Options.getInstance().isSet("wrapscan")) {
-      final int start = max.getStartOffset();
-      if (forwards && start < offset || start >= offset) {
-        return null;
+      else {
+        final Document doc = editor.getDocument();
+        final CharSequence chars = doc.getCharsSequence();
+        final int line = doc.getLineNumber(offset);
+        final int start = previousMatch.getStartOffset();
+        final int end = start + pattern.length();
+        if (doc.getLineNumber(start) > line && end <= chars.length()) {
+          final LiteralSearcher searcher = new LiteralSearcher(pattern, shouldIgnoreCase(pattern, ignoreCase));
+          if (searcher.indexOf(chars.subSequence(start, end), 0) == 0 &&
+              searcher.indexOf(chars.subSequence(doc.getLineStartOffset(line), doc.getLineEndOffset(line)), 0) < 0) {
+            return new TextRange(start, end);
+          }
+        }
       }
     }
-    return max;
+
+    return findNext(editor, pattern, offset, ignoreCase, forwards);
   }
 
-  private static int distance(@NotNull TextRange range, int pos, boolean forwards, int size) {
-    final int start = range.getStartOffset();
-    if (start <= pos) {
-      return forwards ? size - pos + start : pos - start;
-    }
-    else {
-      return forwards ? start - pos : pos + size - start;
+  private static boolean isLiteralPattern(@NotNull String pattern) {
+    for (int i = 0; i < pattern.length(); i++) {
+      if ("\\.*[~^$/?".indexOf(pattern.charAt(i)) >= 0) {
+        return false;
+      }
     }
+    return true;
   }
 
   @NotNull
@@ -652,13 +730,43 @@ public class SearchGroup {
                                          int startLine,
                                          int endLine,
                                          boolean ignoreCase) {
+    return findAll(editor, pattern, startLine, endLine, ignoreCase, null);
+  }
+
+  /**
+   * Finds the matches outside of the lines from skipStartLine to skipEndLine, in the whole file if skipEndLine is
+   * negative. This is the part of the search highlighting that is left to the background task.
+   */
+  @NotNull
+  private static List<TextRange> findAllOutsideLines(@NotNull Editor editor, @NotNull String pattern,
+                                                     boolean ignoreCase, int skipStartLine, int skipEndLine,
+                                                     @Nullable ProgressIndicator indicator) {
+    if (skipEndLine < 0) {
+      return findAll(editor, pattern, 0, -1, ignoreCase, indicator);
+    }
+
+    final List<TextRange> results = Lists.newArrayList();
+    if (skipStartLine > 0) {
+      results.addAll(findAll(editor, pattern, 0, skipStartLine - 1, ignoreCase, indicator));
+    }
+    results.addAll(findAll(editor, pattern, skipEndLine + 1, -1, ignoreCase, indicator));
+    return results;
+  }
+
+  @NotNull
+  private static List<TextRange> findAll(@NotNull Editor editor,
+                                         @NotNull String pattern,
+                                         int startLine,
+                                         int endLine,
+                                         boolean ignoreCase,
+                                         @Nullable ProgressIndicator indicator) {
     final List<TextRange> results = Lists.newArrayList();
     final int lineCount = EditorHelper.getLineCount(editor);
     final int actualEndLine = endLine == -1 ? lineCount : endLine;
 
     final RegExp.regmmatch_T regMatch = new RegExp.regmmatch_T();
     final RegExp regExp = new RegExp();
-    regMatch.regprog = regExp.vim_regcomp(pattern, 1);
+    regMatch.regprog = RegExpCache.getInstance().vim_regcomp(regExp, pattern, 1);
     if (regMatch.regprog == null) {
       return results;
     }
@@ -667,6 +775,16 @@ public class SearchGroup {
 
     int col = 0;
     for (int line = startLine; line <= actualEndLine; ) {
+      if (indicator != null) {
+        indicator.checkCanceled();
+      }
+      if (col == 0) {
+        // Skip the lines that don't contain the literal text of the pattern
+        line = RegExp.vim_regcandidate(regMatch, editor, line, 1);
+        if (line < 0 || line > actualEndLine) {
+          break;
+        }
+      }
       int matchedLines = regExp.vim_regexec_multi(regMatch, editor, lineCount, line, col);
       if (matchedLines > 0) {
         final CharacterPosition startPos = new CharacterPosition(line + regMatch.startpos[0].lnum,
@@ -697,14 +815,36 @@ public class SearchGroup {
 
   private static void highlightSearchLines(@NotNull Editor editor, @NotNull String pattern, int startLine, int endLine,
                                            boolean ignoreCase) {
+    addSearchHighlights(editor, pattern, findAll(editor, pattern, startLine, endLine, ignoreCase), false);
+  }
+
+  private static void addSearchHighlights(@NotNull Editor editor, @NotNull String pattern,
+                                          @NotNull List<TextRange> ranges, boolean skipExisting) {
     final TextAttributes color = editor.getColorsScheme().getAttributes(EditorColors.SEARCH_RESULT_ATTRIBUTES);
-    Collection<RangeHighlighter> highlighters = EditorData.getLastHighlights(editor);
+    Set<RangeHighlighter> highlighters = EditorData.getLastHighlights(editor);
     if (highlighters == null) {
-      highlighters = new ArrayList<RangeHighlighter>();
+      highlighters = new HashSet<RangeHighlighter>();
       EditorData.setLastHighlights(editor, highlighters);
     }
 
-    for (TextRange range : findAll(editor, pattern, startLine, endLine, ignoreCase)) {
+    final Set<Long> existing = new HashSet<Long>();
+    if (skipExisting) {
+      for (Iterator<RangeHighlighter> iterator = highlighters.iterator(); iterator.hasNext(); ) {
+        final RangeHighlighter rh = iterator.next();
+        if (rh.isValid()) {
+          existing.add(rangeKey(rh.getStartOffset(), rh.getEndOffset()));
+        }
+        else {
+          iterator.remove();
+          editor.getMarkupModel().removeHighlighter(rh);
+        }
+      }
+    }
+
+    for (TextRange range : ranges) {
+      if (skipExisting && existing.contains(rangeKey(range.getStartOffset(), range.getEndOffset()))) {
+        continue;
+      }
       final RangeHighlighter highlighter = highlightMatch(editor, range.getStartOffset(), range.getEndOffset());
       highlighter.setErrorStripeMarkColor(color.getBackgroundColor());
       highlighter.setErrorStripeTooltip(pattern);
@@ -712,6 +852,107 @@ public class SearchGroup {
     }
   }
 
+  private static long rangeKey(int start, int end) {
+    return ((long)start << 32) | (end & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Highlights the matches in the visible part of the editor right away and leaves the rest of the file to a
+   * cancellable background read task, so turning hlsearch on for a huge file doesn't block typing.
+   */
+  private static void highlightSearchIncrementally(@NotNull Editor editor, @NotNull String pattern,
+                                                   boolean ignoreCase) {
+    final int topVisualLine = EditorHelper.getVisualLineAtTopOfScreen(editor);
+    final int topLine = EditorHelper.visualLineToLogicalLine(editor, topVisualLine);
+    final int bottomLine =
+      EditorHelper.visualLineToLogicalLine(editor, topVisualLine + EditorHelper.getScreenHeight(editor));
+    highlightSearchLines(editor, pattern, topLine, bottomLine, ignoreCase);
+
+    scheduleSearchHighlight(editor, pattern, ignoreCase, topLine, bottomLine);
+  }
+
+  private static void scheduleSearchHighlight(@NotNull Editor editor, @NotNull String pattern, boolean ignoreCase,
+                                              int skipStartLine, int skipEndLine) {
+    final ProgressIndicator indicator = new ProgressIndicatorBase();
+    EditorData.setHighlightProgress(editor, indicator);
+    final HighlightSearchTask task = new HighlightSearchTask(editor, pattern, ignoreCase, skipStartLine, skipEndLine);
+    ProgressIndicatorUtils.scheduleWithWriteActionPriority(indicator, task);
+  }
+
+  private static void cancelSearchHighlight(@NotNull Editor editor) {
+    final ProgressIndicator indicator = EditorData.getHighlightProgress(editor);
+    if (indicator != null) {
+      EditorData.setHighlightProgress(editor, null);
+      indicator.cancel();
+    }
+  }
+
+  /**
+   * Finds the matches outside of the already highlighted lines in a background read action. The task is restarted
+   * from scratch when a write action interrupts it, the lines changed in the meantime are taken care of by
+   * {@link DocumentSearchListener}.
+   */
+  private static class HighlightSearchTask extends ReadTask {
+    public HighlightSearchTask(@NotNull Editor editor, @NotNull String pattern, boolean ignoreCase, int skipStartLine,
+                               int skipEndLine) {
+      this.editor = editor;
+      this.pattern = pattern;
+      this.ignoreCase = ignoreCase;
+      this.skipStartLine = skipStartLine;
+      this.skipEndLine = skipEndLine;
+    }
+
+    @Nullable
+    @Override
+    public Continuation performInReadAction(@NotNull final ProgressIndicator indicator) throws ProcessCanceledException {
+      if (editor.isDisposed()) {
+        return null;
+      }
+
+      final long stamp = editor.getDocument().getModificationStamp();
+      final List<TextRange> results = findAllOutsideLines(editor, pattern, ignoreCase, skipStartLine, skipEndLine,
+                                                          indicator);
+
+      return new Continuation(new Runnable() {
+        @Override
+        public void run() {
+          if (!isCurrent(indicator)) {
+            return;
+          }
+          if (editor.getDocument().getModificationStamp() != stamp) {
+            scheduleSearchHighlight(editor, pattern, ignoreCase, -1, -1);
+            return;
+          }
+          EditorData.setHighlightProgress(editor, null);
+          addSearchHighlights(editor, pattern, results, true);
+        }
+      });
+    }
+
+    @Override
+    public void onCanceled(@NotNull final ProgressIndicator indicator) {
+      ApplicationManager.getApplication().invokeLater(new Runnable() {
+        @Override
+        public void run() {
+          if (isCurrent(indicator)) {
+            scheduleSearchHighlight(editor, pattern, ignoreCase, -1, -1);
+          }
+        }
+      });
+    }
+
+    private boolean isCurrent(@NotNull ProgressIndicator indicator) {
+      return !editor.isDisposed() && EditorData.getHighlightProgress(editor) == indicator &&
+             pattern.equals(EditorData.getLastSearch(editor));
+    }
+
+    @NotNull private final Editor editor;
+    @NotNull private final String pattern;
+    private final boolean ignoreCase;
+    private final int skipStartLine;
+    private final int skipEndLine;
+  }
+
   private int findItOffset(@NotNull Editor editor, int startOffset, int count, int dir,
                            boolean noSmartCase) {
     boolean wrap = Options.getInstance().isSet("wrapscan");
@@ -808,12 +1049,19 @@ public class SearchGroup {
   @Nullable
   private TextRange findIt(@NotNull Editor editor, int startOffset, int count, int dir,
                            boolean noSmartCase, boolean wrap, boolean showMessages, boolean wholeFile) {
-    TextRange res = null;
-
     if (lastSearch == null || lastSearch.length() == 0) {
-      return res;
+      return null;
     }
 
+    return findIt(editor, lastSearch, startOffset, count, dir, shouldIgnoreCase(lastSearch, noSmartCase), wrap,
+                  showMessages, wholeFile);
+  }
+
+  @Nullable
+  private static TextRange findIt(@NotNull Editor editor, @NotNull String pattern, int startOffset, int count, int dir,
+                                  boolean ignoreCase, boolean wrap, boolean showMessages, boolean wholeFile) {
+    TextRange res = null;
+
     /*
     int pflags = RE.REG_MULTILINE;
     if (shouldIgnoreCase(lastSearch, noSmartCase))
@@ -824,11 +1072,11 @@ public class SearchGroup {
     //RE sp;
     RegExp sp;
     RegExp.regmmatch_T regmatch = new RegExp.regmmatch_T();
-    regmatch.rmm_ic = shouldIgnoreCase(lastSearch, noSmartCase);
+    regmatch.rmm_ic = ignoreCase;
     sp = new RegExp();
-    regmatch.regprog = sp.vim_regcomp(lastSearch, 1);
-    if (regmatch == null) {
-      if (logger.isDebugEnabled()) logger.debug("bad pattern: " + lastSearch);
+    regmatch.regprog = RegExpCache.getInstance().vim_regcomp(sp, pattern, 1);
+    if (regmatch.regprog == null) {
+      if (logger.isDebugEnabled()) logger.debug("bad pattern: " + pattern);
       return res;
     }
 
@@ -896,6 +1144,25 @@ public class SearchGroup {
           endLine = lnum + 1;
         }
         for (; lnum >= startLine && lnum < endLine; lnum += dir, at_first_line = false) {
+          // Lets a background 'incsearch' be cancelled, does nothing when there is no progress indicator
+          ProgressManager.checkCanceled();
+
+          /*
+          * Skip the lines that can't match, stop at the end of the file or,
+          * in the second loop, where the search started.
+          */
+          if (wholeFile) {
+            final int candidate = RegExp.vim_regcandidate(regmatch, editor, lnum, dir);
+            if (candidate != lnum) {
+              if (candidate < 0 || candidate >= endLine || (loop != 0 && (candidate - start_pos.lnum) * dir > 0)) {
+                lnum = dir == 1 ? endLine : startLine - 1;
+                break;
+              }
+              lnum = candidate;
+              at_first_line = false;
+            }
+          }
+
           /*
           * Look for a match somewhere in the line.
           */
@@ -1058,13 +1325,13 @@ public class SearchGroup {
       //if ((options & SEARCH_MSG) == SEARCH_MSG)
       if (showMessages) {
         if (wrap) {
-          VimPlugin.showMessage(MessageHelper.message(Msg.e_patnotf2, lastSearch));
+          VimPlugin.showMessage(MessageHelper.message(Msg.e_patnotf2, pattern));
         }
         else if (lnum <= 0) {
-          VimPlugin.showMessage(MessageHelper.message(Msg.E384, lastSearch));
+          VimPlugin.showMessage(MessageHelper.message(Msg.E384, pattern));
         }
         else {
-          VimPlugin.showMessage(MessageHelper.message(Msg.E385, lastSearch));
+          VimPlugin.showMessage(MessageHelper.message(Msg.E385, pattern));
         }
       }
       return null;
@@ -1102,7 +1369,9 @@ public class SearchGroup {
   }
 
   private static void removeSearchHighlight(@NotNull Editor editor) {
-    Collection<RangeHighlighter> ehl = EditorData.getLastHighlights(editor);
+    cancelSearchHighlight(editor);
+
+    Set<RangeHighlighter> ehl = EditorData.getLastHighlights(editor);
     if (ehl == null) {
       return;
     }
@@ -1203,49 +1472,95 @@ public class SearchGroup {
   }
 
   public static class DocumentSearchListener extends DocumentAdapter {
+    @Override
+    public void beforeDocumentChange(@NotNull DocumentEvent event) {
+      if (!VimPlugin.isEnabled()) {
+        return;
+      }
+
+      // The matches in the replaced text become invalid with the change and the markup model won't report them anymore
+      for (Editor editor : getEditors(event)) {
+        removeHighlights(editor, event.getOffset(), event.getOffset() + event.getOldLength());
+      }
+    }
+
     public void documentChanged(@NotNull DocumentEvent event) {
       if (!VimPlugin.isEnabled()) {
         return;
       }
 
-      Project[] projs = ProjectManager.getInstance().getOpenProjects();
-      for (Project proj : projs) {
-        Editor[] editors = EditorFactory.getInstance().getEditors(event.getDocument(), proj);
-        for (Editor editor : editors) {
-          Collection hls = EditorData.getLastHighlights(editor);
-          if (hls == null) {
-            continue;
-          }
+      for (Editor editor : getEditors(event)) {
+        if (EditorData.getLastHighlights(editor) == null) {
+          continue;
+        }
 
-          int soff = event.getOffset();
-          int eoff = soff + event.getNewLength();
+        int soff = event.getOffset();
+        int eoff = soff + event.getNewLength();
 
-          if (logger.isDebugEnabled()) {
-            logger.debug("hls=" + hls);
-            logger.debug("event=" + event);
-          }
-          Iterator iter = hls.iterator();
-          while (iter.hasNext()) {
-            RangeHighlighter rh = (RangeHighlighter)iter.next();
-            if (!rh.isValid() || (eoff >= rh.getStartOffset() && soff <= rh.getEndOffset())) {
-              iter.remove();
-              editor.getMarkupModel().removeHighlighter(rh);
-            }
-          }
+        if (logger.isDebugEnabled()) {
+          logger.debug("event=" + event);
+        }
+        removeHighlights(editor, soff, eoff);
+
+        int sl = editor.offsetToLogicalPosition(soff).line;
+        int el = editor.offsetToLogicalPosition(eoff).line;
+        VimPlugin.getSearch().highlightSearchLines(editor, false, sl, el);
+        if (logger.isDebugEnabled()) {
+          logger.debug("sl=" + sl + ", el=" + el);
+          logger.debug("hls=" + EditorData.getLastHighlights(editor));
+        }
+      }
+    }
+
+    @NotNull
+    private static List<Editor> getEditors(@NotNull DocumentEvent event) {
+      final List<Editor> res = new ArrayList<Editor>();
+      for (Project proj : ProjectManager.getInstance().getOpenProjects()) {
+        Collections.addAll(res, EditorFactory.getInstance().getEditors(event.getDocument(), proj));
+      }
+      return res;
+    }
 
-          int sl = editor.offsetToLogicalPosition(soff).line;
-          int el = editor.offsetToLogicalPosition(eoff).line;
-          VimPlugin.getSearch().highlightSearchLines(editor, false, sl, el);
-          hls = EditorData.getLastHighlights(editor);
-          if (logger.isDebugEnabled()) {
-            logger.debug("sl=" + sl + ", el=" + el);
-            logger.debug("hls=" + hls);
+    /**
+     * Removes the search highlighters that touch the range. The markup model is asked for the highlighters around the
+     * range instead of walking every match in the file.
+     */
+    private static void removeHighlights(@NotNull Editor editor, int startOffset, int endOffset) {
+      final Set<RangeHighlighter> hls = EditorData.getLastHighlights(editor);
+      if (hls == null) {
+        return;
+      }
+
+      final List<RangeHighlighter> changed = new ArrayList<RangeHighlighter>();
+      final MarkupModelEx markupModel = (MarkupModelEx)editor.getMarkupModel();
+      markupModel.processRangeHighlightersOverlappingWith(startOffset, endOffset, new Processor<RangeHighlighter>() {
+        @Override
+        public boolean process(RangeHighlighter rh) {
+          if (hls.contains(rh)) {
+            changed.add(rh);
           }
+          return true;
         }
+      });
+      for (RangeHighlighter rh : changed) {
+        hls.remove(rh);
+        editor.getMarkupModel().removeHighlighter(rh);
       }
     }
   }
 
+  private static class SubstituteEdit {
+    public SubstituteEdit(int startOffset, int endOffset, @NotNull String replacement) {
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+      this.replacement = replacement;
+    }
+
+    private final int startOffset;
+    private final int endOffset;
+    @NotNull private final String replacement;
+  }
+
   private enum ReplaceConfirmationChoice {
     SUBSTITUTE_THIS,
     SUBSTITUTE_LAST,
@@ -21,6 +21,7 @@ package com.maddyhome.idea.vim.helper;
 import com.maddyhome.idea.vim.option.KeywordOption;
 import com.maddyhome.idea.vim.option.Options;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This helper class is used when working with various character level operations
@@ -53,20 +54,19 @@ public class CharacterHelper {
    */
   @NotNull
   public static CharacterType charType(char ch, boolean punctuationAsLetters) {
-    final Character.UnicodeBlock block = Character.UnicodeBlock.of(ch);
     if (Character.isWhitespace(ch)) {
       return CharacterType.WHITESPACE;
     }
-    else if (block == Character.UnicodeBlock.HIRAGANA) {
+    else if (ch >= '\u3040' && ch <= '\u309F') {
       return CharacterType.HIRAGANA;
     }
-    else if (block == Character.UnicodeBlock.KATAKANA) {
+    else if (ch >= '\u30A0' && ch <= '\u30FF') {
       return CharacterType.KATAKANA;
     }
     else if (isHalfWidthKatakanaLetter(ch)) {
       return CharacterType.HALF_WIDTH_KATAKANA;
     }
-    else if (punctuationAsLetters || ((KeywordOption)Options.getInstance().getOption("iskeyword")).isKeyword(ch)) {
+    else if (punctuationAsLetters || getKeywordOption().isKeyword(ch)) {
       return CharacterType.KEYWORD;
     }
     else {
@@ -78,6 +78,17 @@ public class CharacterHelper {
     return ch >= '\uFF66' && ch <= '\uFF9F';
   }
 
+  /**
+   * The option is looked up once, the same instance is kept and updated when 'iskeyword' changes
+   */
+  @NotNull
+  private static KeywordOption getKeywordOption() {
+    if (keywordOption == null) {
+      keywordOption = (KeywordOption)Options.getInstance().getOption("iskeyword");
+    }
+    return keywordOption;
+  }
+
   /**
    * Changes the case of the supplied character based on the supplied change type
    *
@@ -105,4 +116,6 @@ public class CharacterHelper {
 
     return ch;
   }
+
+  @Nullable private static KeywordOption keywordOption;
 }
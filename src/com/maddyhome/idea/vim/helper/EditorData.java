@@ -22,6 +22,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.testFramework.LightVirtualFile;
@@ -37,7 +38,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Field;
-import java.util.Collection;
+import java.util.Set;
 
 /**
  * This class is used to manipulate editor specific data. Each editor has a user defined map associated with it.
@@ -63,6 +64,7 @@ public class EditorData {
     if (logger.isDebugEnabled()) logger.debug("editor closed: " + editor);
     editor.putUserData(COMMAND_STATE, null);
     editor.putUserData(LAST_HIGHLIGHTS, null);
+    editor.putUserData(HIGHLIGHT_PROGRESS, null);
     editor.putUserData(LAST_SELECTION_TYPE, null);
     editor.putUserData(LAST_VISUAL_RANGE, null);
     editor.putUserData(VISUAL_OP, null);
@@ -115,14 +117,29 @@ public class EditorData {
   }
 
   @Nullable
-  public static Collection<RangeHighlighter> getLastHighlights(@NotNull Editor editor) {
+  public static Set<RangeHighlighter> getLastHighlights(@NotNull Editor editor) {
     return editor.getUserData(LAST_HIGHLIGHTS);
   }
 
-  public static void setLastHighlights(@NotNull Editor editor, Collection<RangeHighlighter> highlights) {
+  public static void setLastHighlights(@NotNull Editor editor, Set<RangeHighlighter> highlights) {
     editor.putUserData(LAST_HIGHLIGHTS, highlights);
   }
 
+  /**
+   * Gets the progress indicator of the background search highlighting running for the editor.
+   *
+   * @param editor The editor
+   * @return The indicator, null if no background highlighting is pending
+   */
+  @Nullable
+  public static ProgressIndicator getHighlightProgress(@NotNull Editor editor) {
+    return editor.getUserData(HIGHLIGHT_PROGRESS);
+  }
+
+  public static void setHighlightProgress(@NotNull Editor editor, @Nullable ProgressIndicator indicator) {
+    editor.putUserData(HIGHLIGHT_PROGRESS, indicator);
+  }
+
   /***
    * @see :help visualmode()
    */
@@ -259,7 +276,8 @@ public class EditorData {
   public static final Key<TextRange> LAST_VISUAL_RANGE = new Key<TextRange>("lastVisualRange");
   private static final Key<VisualChange> VISUAL_OP = new Key<VisualChange>("lastVisualOp");
   private static final Key<String> LAST_SEARCH = new Key<String>("lastSearch");
-  private static final Key<Collection<RangeHighlighter>> LAST_HIGHLIGHTS = new Key<Collection<RangeHighlighter>>("lastHighlights");
+  private static final Key<Set<RangeHighlighter>> LAST_HIGHLIGHTS = new Key<Set<RangeHighlighter>>("lastHighlights");
+  private static final Key<ProgressIndicator> HIGHLIGHT_PROGRESS = new Key<ProgressIndicator>("IdeaVim.highlightProgress");
   private static final Key<CommandState> COMMAND_STATE = new Key<CommandState>("commandState");
   private static final Key<Boolean> CHANGE_GROUP = new Key<Boolean>("changeGroup");
   private static final Key<Boolean> MOTION_GROUP = new Key<Boolean>("motionGroup");
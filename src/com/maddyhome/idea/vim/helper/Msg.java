@@ -28,6 +28,9 @@ public interface Msg {
   String e_argreq = "e_argreq";
   String e_noprev = "e_noprev";
   String e_nopresub = "e_nopresub";
+  String e_noprevre = "e_noprevre";
+  String E39 = "E39";
+  String E104 = "E104";
   String E191 = "E191";
   String e_backrange = "e_backrange";
   String E146 = "E146";
@@ -70,4 +73,5 @@ public interface Msg {
   String e_patnotf2 = "e_patnotf2";
   String unkopt = "unkopt";
   String e_invarg = "e_invarg";
+  String e_cmdtimeout = "e_cmdtimeout";
 }
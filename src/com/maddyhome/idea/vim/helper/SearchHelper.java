@@ -624,9 +624,7 @@ public class SearchHelper {
    */
   @NotNull
   public static CountPosition countWords(@NotNull Editor editor) {
-    int size = EditorHelper.getFileSize(editor);
-
-    return countWords(editor, 0, size);
+    return WordCountIndex.countWords(editor.getDocument(), editor.getCaretModel().getOffset());
   }
 
   /**
@@ -715,12 +713,12 @@ public class SearchHelper {
     return res;
   }
 
-  private static int findNextWordOne(@NotNull CharSequence chars,
-                                     int pos,
-                                     int size,
-                                     int step,
-                                     boolean bigWord,
-                                     boolean spaceWords) {
+  static int findNextWordOne(@NotNull CharSequence chars,
+                             int pos,
+                             int size,
+                             int step,
+                             boolean bigWord,
+                             boolean spaceWords) {
     boolean found = false;
     pos = pos < size ? pos : Math.min(size, chars.length() - 1);
     // For back searches, skip any current whitespace so we start at the end of a word
@@ -0,0 +1,227 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.maddyhome.idea.vim.helper;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the WORD starts found in blocks of lines of a document, so counting the words of a large file only has to
+ * rescan the blocks that were changed since the last count.
+ * <p>
+ * The words are counted like {@link SearchHelper#countWords(CharSequence, int, int, int)} does, by going from one WORD
+ * start to the next one from the start of the file. The next WORD start only depends on the text after the current
+ * one, so if the count enters an unchanged block at the same WORD start as before, the block can be skipped.
+ */
+class WordCountIndex extends DocumentAdapter {
+  private static final int BLOCK_LINES = 4096;
+
+  WordCountIndex() {
+    this(BLOCK_LINES);
+  }
+
+  /**
+   * Small blocks make the tests run through the block bookkeeping with small documents.
+   */
+  WordCountIndex(int blockLines) {
+    this.blockLines = blockLines;
+  }
+
+  /**
+   * Counts the words of the whole document and the position of the word at the offset.
+   */
+  @NotNull
+  static SearchHelper.CountPosition countWords(@NotNull Document document, int offset) {
+    WordCountIndex index = document.getUserData(WORD_COUNT_INDEX);
+    if (index == null) {
+      index = new WordCountIndex();
+      document.putUserData(WORD_COUNT_INDEX, index);
+      document.addDocumentListener(index);
+    }
+    return index.count(document, offset);
+  }
+
+  @NotNull
+  SearchHelper.CountPosition count(@NotNull Document document, int offset) {
+    final CharSequence chars = document.getCharsSequence();
+    final int len = chars.length();
+    final int size = len == 0 || chars.charAt(len - 1) != '\n' ? len : len - 1;
+    final int lineCount = document.getLineCount();
+    if (size == 0 || lineCount == 0) {
+      return SearchHelper.countWords(chars, 0, size, offset);
+    }
+
+    int lines = 0;
+    for (Block block : blocks) {
+      lines += block.lines;
+    }
+    if (lines != lineCount) {
+      blocks.clear();
+      for (int line = 0; line < lineCount; line += blockLines) {
+        blocks.add(new Block(Math.min(blockLines, lineCount - line)));
+      }
+    }
+
+    final int[] starts = new int[blocks.size() + 1];
+    int line = 0;
+    for (int i = 0; i < blocks.size(); i++) {
+      starts[i] = document.getLineStartOffset(line);
+      line += blocks.get(i).lines;
+    }
+    starts[blocks.size()] = len;
+
+    // This is SearchHelper.countWords from the start to the end of the file, with whole blocks skipped where possible
+    int count = 1;
+    int position = 0;
+    int last = -1;
+    int res = 0;
+    int current = 0;
+    int recording = -1;
+    int recordingFirst = 0;
+    int recordingSteps = 0;
+    while (true) {
+      res = SearchHelper.findNextWordOne(chars, res, size, 1, true, false);
+      if (res == 0 || res > size || res == last) {
+        break;
+      }
+
+      while (res >= starts[current + 1] && current < blocks.size() - 1) {
+        current++;
+      }
+      if (current != recording) {
+        // The WORD starts are only remembered and skipped in the blocks that end before the end of the file, at the
+        // end of the file they are moved by the end of the file
+        if (recording >= 0 && starts[recording + 1] < size) {
+          blocks.get(recording).remember(recordingFirst - starts[recording], last - starts[recording], recordingSteps);
+        }
+        recording = -1;
+
+        final Block block = blocks.get(current);
+        if (starts[current + 1] < size && block.valid && block.first == res - starts[current]) {
+          final int blockLast = block.last + starts[current];
+          // The position only changes at a WORD start after the previous one and not before the offset
+          if (!(last < offset && offset <= blockLast)) {
+            count += block.steps;
+            last = blockLast;
+            res = blockLast;
+            continue;
+          }
+        }
+        recording = current;
+        recordingFirst = res;
+        recordingSteps = 0;
+      }
+
+      count++;
+
+      if (res == offset) {
+        position = count;
+      }
+      else if (last < offset && res >= offset) {
+        if (count == 2 && res > offset) {
+          position = 1;
+        }
+        else {
+          position = count - 1;
+        }
+      }
+
+      last = res;
+      recordingSteps++;
+    }
+
+    if (position == 0 && res == offset) {
+      position = count;
+    }
+
+    return new SearchHelper.CountPosition(count, position);
+  }
+
+  @Override
+  public void documentChanged(@NotNull DocumentEvent event) {
+    if (blocks.isEmpty()) {
+      return;
+    }
+
+    final Document document = event.getDocument();
+    final int startLine = document.getLineNumber(event.getOffset());
+    final int lines = StringUtil.countNewLines(event.getNewFragment()) - StringUtil.countNewLines(event.getOldFragment());
+    final int oldEndLine = document.getLineNumber(event.getOffset() + event.getNewLength()) - lines;
+
+    // The changed lines are merged into one block that has to be scanned again
+    int first = -1;
+    int line = 0;
+    for (int i = 0; i < blocks.size(); i++) {
+      final Block block = blocks.get(i);
+      if (first < 0 && startLine < line + block.lines) {
+        first = i;
+      }
+      if (first >= 0 && oldEndLine < line + block.lines) {
+        final Block merged = blocks.get(first);
+        for (int j = first + 1; j <= i; j++) {
+          merged.lines += blocks.remove(first + 1).lines;
+        }
+        merged.lines += lines;
+        merged.valid = false;
+        while (merged.lines > 2 * blockLines) {
+          merged.lines -= blockLines;
+          blocks.add(first, new Block(blockLines));
+        }
+        return;
+      }
+      line += block.lines;
+    }
+
+    // The blocks don't match the document, they are built again by the next count
+    blocks.clear();
+  }
+
+  private static class Block {
+    Block(int lines) {
+      this.lines = lines;
+    }
+
+    void remember(int first, int last, int steps) {
+      this.first = first;
+      this.last = last;
+      this.steps = steps;
+      valid = true;
+    }
+
+    int lines;
+    boolean valid;
+    // The first and last WORD start in the block relative to its start, and the number of WORD starts
+    int first;
+    int last;
+    int steps;
+  }
+
+  private final int blockLines;
+  @NotNull private final List<Block> blocks = new ArrayList<Block>();
+
+  private static final Key<WordCountIndex> WORD_COUNT_INDEX = new Key<WordCountIndex>("wordCountIndex");
+}
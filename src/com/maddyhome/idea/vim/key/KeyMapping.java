@@ -18,7 +18,6 @@
 
 package com.maddyhome.idea.vim.key;
 
-import com.google.common.collect.ImmutableList;
 import com.maddyhome.idea.vim.command.MappingMode;
 import com.maddyhome.idea.vim.extension.VimExtensionHandler;
 import org.jetbrains.annotations.NotNull;
@@ -28,66 +27,87 @@ import javax.swing.*;
 import java.util.*;
 
 /**
+ * The key mappings of a mapping mode, stored as a tree of {@link MappingNode}s. The key handler keeps the node for the
+ * keys typed so far, so each typed key is a single child lookup.
+ *
  * @author vlan
  */
 public class KeyMapping implements Iterable<List<KeyStroke>> {
-  @NotNull private final Map<ImmutableList<KeyStroke>, MappingInfo> myKeys = new HashMap<ImmutableList<KeyStroke>, MappingInfo>();
-  @NotNull private final Map<ImmutableList<KeyStroke>, Integer> myPrefixes = new HashMap<ImmutableList<KeyStroke>, Integer>();
+  @NotNull private final MappingNode myRoot = new MappingNode();
 
   @NotNull
   @Override
   public Iterator<List<KeyStroke>> iterator() {
-    return new ArrayList<List<KeyStroke>>(myKeys.keySet()).iterator();
+    final List<List<KeyStroke>> keys = new ArrayList<List<KeyStroke>>();
+    final Deque<MappingNode> nodes = new ArrayDeque<MappingNode>();
+    nodes.push(myRoot);
+    while (!nodes.isEmpty()) {
+      final MappingNode node = nodes.pop();
+      final MappingInfo mappingInfo = node.getMappingInfo();
+      if (mappingInfo != null) {
+        keys.add(mappingInfo.getFromKeys());
+      }
+      for (MappingNode child : node.getChildren()) {
+        nodes.push(child);
+      }
+    }
+    return keys.iterator();
+  }
+
+  /**
+   * The node for the empty key sequence
+   */
+  @NotNull
+  public MappingNode getRoot() {
+    return myRoot;
   }
 
   @Nullable
   public MappingInfo get(@NotNull List<KeyStroke> keys) {
-    return myKeys.get(ImmutableList.copyOf(keys));
+    final MappingNode node = getNode(keys);
+    return node != null ? node.getMappingInfo() : null;
   }
 
   public void put(@NotNull Set<MappingMode> mappingModes, @NotNull List<KeyStroke> fromKeys,
                   @Nullable List<KeyStroke> toKeys, @Nullable VimExtensionHandler extensionHandler, boolean recursive) {
-    myKeys.put(ImmutableList.copyOf(fromKeys),
-               new MappingInfo(mappingModes, fromKeys, toKeys, extensionHandler, recursive));
-    List<KeyStroke> prefix = new ArrayList<KeyStroke>();
-    final int prefixLength = fromKeys.size() - 1;
-    for (int i = 0; i < prefixLength; i++) {
-      prefix.add(fromKeys.get(i));
-      increment(ImmutableList.copyOf(prefix));
+    MappingNode node = myRoot;
+    for (KeyStroke key : fromKeys) {
+      node = node.getOrCreateChild(key);
     }
+    node.setMappingInfo(new MappingInfo(mappingModes, fromKeys, toKeys, extensionHandler, recursive));
   }
 
   public void delete(@NotNull List<KeyStroke> keys) {
-    myKeys.remove(ImmutableList.copyOf(keys));
-    List<KeyStroke> prefix = new ArrayList<KeyStroke>();
-    final int prefixLength = keys.size() - 1;
-    for (int i = 0; i < prefixLength; i++) {
-      prefix.add(keys.get(i));
-      decrement(ImmutableList.copyOf(prefix));
+    final MappingNode[] path = new MappingNode[keys.size() + 1];
+    path[0] = myRoot;
+    for (int i = 0; i < keys.size(); i++) {
+      path[i + 1] = path[i].getChild(keys.get(i));
+      if (path[i + 1] == null) {
+        return;
+      }
     }
-  }
+    path[keys.size()].setMappingInfo(null);
 
-  public boolean isPrefix(@NotNull List<KeyStroke> keys) {
-    return myPrefixes.get(ImmutableList.copyOf(keys)) != null;
+    // Remove the nodes that are no longer a part of any mapping
+    for (int i = keys.size(); i > 0 && path[i].getMappingInfo() == null && !path[i].hasChildren(); i--) {
+      path[i - 1].removeChild(keys.get(i - 1));
+    }
   }
 
-  private void increment(@NotNull ImmutableList<KeyStroke> prefix) {
-    Integer count = myPrefixes.get(prefix);
-    if (count == null) {
-      count = 0;
-    }
-    myPrefixes.put(prefix, count + 1);
+  public boolean isPrefix(@NotNull List<KeyStroke> keys) {
+    final MappingNode node = getNode(keys);
+    return node != null && node.hasChildren();
   }
 
-  private void decrement(@NotNull ImmutableList<KeyStroke> prefix) {
-    final Integer count = myPrefixes.get(prefix);
-    if (count != null) {
-      if (count <= 1) {
-        myPrefixes.remove(prefix);
-      }
-      else {
-        myPrefixes.put(prefix, count - 1);
+  @Nullable
+  private MappingNode getNode(@NotNull List<KeyStroke> keys) {
+    MappingNode node = myRoot;
+    for (KeyStroke key : keys) {
+      node = node.getChild(key);
+      if (node == null) {
+        return null;
       }
     }
+    return node;
   }
 }
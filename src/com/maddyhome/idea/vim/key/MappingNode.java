@@ -0,0 +1,87 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.maddyhome.idea.vim.key;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A node of the key mapping tree. The path from the root to the node is the sequence of keys typed so far, the node
+ * has children if it is a prefix of longer mappings.
+ */
+public class MappingNode {
+  /**
+   * Returns the node for the keys typed so far followed by the key, null if no mapping starts with these keys
+   */
+  @Nullable
+  public MappingNode getChild(@NotNull KeyStroke key) {
+    return children != null ? children.get(key) : null;
+  }
+
+  /**
+   * The mapping for the keys that lead to this node, null if these keys are only a prefix of other mappings
+   */
+  @Nullable
+  public MappingInfo getMappingInfo() {
+    return mappingInfo;
+  }
+
+  public boolean hasChildren() {
+    return children != null && !children.isEmpty();
+  }
+
+  @NotNull
+  MappingNode getOrCreateChild(@NotNull KeyStroke key) {
+    if (children == null) {
+      children = new HashMap<KeyStroke, MappingNode>();
+    }
+    MappingNode child = children.get(key);
+    if (child == null) {
+      child = new MappingNode();
+      children.put(key, child);
+    }
+
+    return child;
+  }
+
+  void removeChild(@NotNull KeyStroke key) {
+    if (children != null) {
+      children.remove(key);
+    }
+  }
+
+  @NotNull
+  Collection<MappingNode> getChildren() {
+    return children != null ? children.values() : Collections.<MappingNode>emptyList();
+  }
+
+  void setMappingInfo(@Nullable MappingInfo mappingInfo) {
+    this.mappingInfo = mappingInfo;
+  }
+
+  @Nullable private Map<KeyStroke, MappingNode> children;
+  @Nullable private MappingInfo mappingInfo;
+}
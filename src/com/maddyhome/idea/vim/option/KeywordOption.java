@@ -14,6 +14,8 @@ public final class KeywordOption extends ListOption {
 
   // KeywordSpecs are the option values in reverse order
   @NotNull private List<KeywordSpec> keywordSpecs = new ArrayList<>();
+  // The specs evaluated for every character below 0x100, all the other characters are keywords
+  @NotNull private final boolean[] keywordTable = new boolean[0x100];
 
   public KeywordOption(@NotNull String name, @NotNull String abbrev, @NotNull String[] defaultValue) {
     super(name, abbrev, defaultValue,
@@ -31,6 +33,7 @@ public final class KeywordOption extends ListOption {
     }
     value.addAll(vals);
     keywordSpecs.addAll(0, specs);
+    updateKeywordTable();
     fireOptionChangeEvent();
     return true;
   }
@@ -44,6 +47,7 @@ public final class KeywordOption extends ListOption {
     }
     value.addAll(0, vals);
     keywordSpecs.addAll(specs);
+    updateKeywordTable();
     fireOptionChangeEvent();
     return true;
   }
@@ -58,6 +62,7 @@ public final class KeywordOption extends ListOption {
     }
     value.removeAll(vals);
     keywordSpecs.removeAll(specs);
+    updateKeywordTable();
     fireOptionChangeEvent();
     return true;
   }
@@ -71,6 +76,7 @@ public final class KeywordOption extends ListOption {
     }
     value = vals;
     keywordSpecs = specs;
+    updateKeywordTable();
     fireOptionChangeEvent();
     return true;
   }
@@ -155,16 +161,19 @@ public final class KeywordOption extends ListOption {
   }
 
   public boolean isKeyword(char c) {
-    final int code = (int)c;
-    if (code >= '\u0100') {
-      return true;
-    }
-    for (KeywordSpec spec : keywordSpecs) {
-      if (spec.contains(code)) {
-        return !spec.negate();
+    return c >= keywordTable.length || keywordTable[c];
+  }
+
+  private void updateKeywordTable() {
+    for (int code = 0; code < keywordTable.length; code++) {
+      keywordTable[code] = false;
+      for (KeywordSpec spec : keywordSpecs) {
+        if (spec.contains(code)) {
+          keywordTable[code] = !spec.negate();
+          break;
+        }
       }
     }
-    return false;
   }
 
   private static final class KeywordSpec {
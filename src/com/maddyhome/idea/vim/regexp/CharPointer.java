@@ -44,9 +44,18 @@ public class CharPointer {
     readonly = false;
   }
 
+  /**
+   * Creates a read-only pointer to the window [start, end) of the text without copying it. The pointer values stay
+   * absolute offsets into the text, so the differences between two pointers into the same window are columns.
+   */
+  public CharPointer(@NotNull CharSequence text, int start, int end) {
+    reset(text, start, end);
+  }
+
   private CharPointer(@NotNull CharPointer ptr, int offset) {
     seq = ptr.seq;
     readonly = ptr.readonly;
+    limit = ptr.limit;
     pointer = ptr.pointer + offset;
   }
 
@@ -136,6 +145,21 @@ public class CharPointer {
     seq = ptr.seq;
     pointer = ptr.pointer;
     readonly = ptr.readonly;
+    limit = ptr.limit;
+
+    return this;
+  }
+
+  /**
+   * Points this pointer to the start of the window [start, end) of the text. Used to reuse one pointer for many
+   * lines instead of allocating a new one for each of them.
+   */
+  @NotNull
+  public CharPointer reset(@NotNull CharSequence text, int start, int end) {
+    seq = text;
+    pointer = start;
+    limit = end;
+    readonly = true;
 
     return this;
   }
@@ -157,7 +181,6 @@ public class CharPointer {
     else {
       int start = pointer;
       int end = normalize(pointer + len);
-      int slen = seq.length();
       //return seq.subSequence(start, end - start).toString();
       return CharBuffer.wrap(seq, start, end).toString();
     }
@@ -168,13 +191,14 @@ public class CharPointer {
       return 0;
     }
 
-    for (int i = pointer; i < seq.length(); i++) {
+    final int len = length();
+    for (int i = pointer; i < len; i++) {
       if (seq.charAt(i) == '\u0000') {
         return i - pointer;
       }
     }
 
-    return seq.length() - pointer;
+    return len - pointer;
   }
 
   public int strncmp(@NotNull String str, int len) {
@@ -197,19 +221,15 @@ public class CharPointer {
       return -1;
     }
 
-    //CharSequence cs1 = seq.subSequence(pointer, normalize(pointer + len));
-    //CharSequence cs2 = str.seq.subSequence(str.pointer, str.normalize(str.pointer + len));
-    CharSequence cs1 = CharBuffer.wrap(seq, pointer, normalize(pointer + len));
-    CharSequence cs2 = CharBuffer.wrap(str.seq, str.pointer, str.normalize(str.pointer + len));
-
-    int l = cs1.length();
-    if (l != cs2.length()) {
+    // Compare in place, wrapping both sides in a CharBuffer allocated two objects per candidate match
+    int l = normalize(pointer + len) - pointer;
+    if (l != str.normalize(str.pointer + len) - str.pointer) {
       return 1;
     }
 
     for (int i = 0; i < l; i++) {
-      char c1 = cs1.charAt(i);
-      char c2 = cs2.charAt(i);
+      char c1 = seq.charAt(pointer + i);
+      char c2 = str.seq.charAt(str.pointer + i);
 
       if (c1 != c2) {
         return 1;
@@ -236,19 +256,14 @@ public class CharPointer {
       return -1;
     }
 
-    //CharSequence cs1 = seq.subSequence(pointer, normalize(pointer + len));
-    //CharSequence cs2 = str.seq.subSequence(str.pointer, str.normalize(str.pointer + len));
-    CharSequence cs1 = CharBuffer.wrap(seq, pointer, normalize(pointer + len));
-    CharSequence cs2 = CharBuffer.wrap(str.seq, str.pointer, str.normalize(str.pointer + len));
-
-    int l = cs1.length();
-    if (l != cs2.length()) {
+    int l = normalize(pointer + len) - pointer;
+    if (l != str.normalize(str.pointer + len) - str.pointer) {
       return 1;
     }
 
     for (int i = 0; i < l; i++) {
-      char c1 = cs1.charAt(i);
-      char c2 = cs2.charAt(i);
+      char c1 = seq.charAt(pointer + i);
+      char c2 = str.seq.charAt(str.pointer + i);
 
       if (Character.toLowerCase(c1) != Character.toLowerCase(c2) &&
           Character.toUpperCase(c1) != Character.toUpperCase(c2)) {
@@ -277,7 +292,7 @@ public class CharPointer {
       return null;
     }
 
-    final int len = seq.length();
+    final int len = length();
     for (int i = pointer; i < len; i++) {
       final char ch = seq.charAt(i);
       if (ch == '\u0000') {
@@ -297,7 +312,7 @@ public class CharPointer {
       return null;
     }
 
-    final int len = seq.length();
+    final int len = length();
     final char cc = Character.toUpperCase(c);
     c = Character.toLowerCase(c);
 
@@ -323,7 +338,7 @@ public class CharPointer {
   }
 
   public boolean end(int offset) {
-    return seq == null || pointer + offset >= seq.length();
+    return seq == null || pointer + offset >= length();
   }
 
   public int OP() {
@@ -369,7 +384,11 @@ public class CharPointer {
   }
 
   private int normalize(int pos) {
-    return Math.min(seq.length(), pos);
+    return Math.min(length(), pos);
+  }
+
+  private int length() {
+    return limit >= 0 ? limit : seq.length();
   }
 
   @NotNull
@@ -380,4 +399,6 @@ public class CharPointer {
   @Nullable private CharSequence seq;
   private int pointer;
   private boolean readonly = true;
+  /* End of the window for pointers created with a start and end, -1 to use the whole sequence */
+  private int limit = -1;
 }
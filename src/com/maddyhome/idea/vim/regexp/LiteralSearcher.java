@@ -0,0 +1,138 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.regexp;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Finds a literal string in a character sequence.
+ * <p>
+ * Case sensitive searches use the Boyer-Moore-Horspool algorithm, so most characters of the text are never looked at
+ * for longer literals. Case insensitive searches compare the characters the same way the regexp matcher does.
+ */
+public class LiteralSearcher {
+  private static final int TABLE_SIZE = 256;
+
+  public LiteralSearcher(@NotNull String literal, boolean ignoreCase) {
+    this.literal = literal;
+    this.ignoreCase = ignoreCase;
+    final int len = literal.length();
+
+    // Characters are hashed to their low byte, colliding characters share the smallest shift, which is always safe
+    forward = new int[TABLE_SIZE];
+    backward = new int[TABLE_SIZE];
+    for (int i = 0; i < TABLE_SIZE; i++) {
+      forward[i] = len;
+      backward[i] = len;
+    }
+    for (int i = 0; i < len - 1; i++) {
+      forward[literal.charAt(i) & 0xFF] = len - 1 - i;
+    }
+    for (int i = len - 1; i > 0; i--) {
+      backward[literal.charAt(i) & 0xFF] = i;
+    }
+  }
+
+  @NotNull
+  public String getLiteral() {
+    return literal;
+  }
+
+  /**
+   * Returns the offset of the first occurrence of the literal that starts at or after "from", -1 if there is none.
+   */
+  public int indexOf(@NotNull CharSequence text, int from) {
+    final int len = literal.length();
+    final int last = text.length() - len;
+    if (len == 0) {
+      return from <= text.length() ? Math.max(from, 0) : -1;
+    }
+
+    int i = Math.max(from, 0);
+    if (ignoreCase) {
+      for (; i <= last; i++) {
+        if (matchesAt(text, i)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    final char end = literal.charAt(len - 1);
+    while (i <= last) {
+      final char c = text.charAt(i + len - 1);
+      if (c == end && matchesAt(text, i)) {
+        return i;
+      }
+      i += forward[c & 0xFF];
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the offset of the last occurrence of the literal that starts at or before "from", -1 if there is none.
+   */
+  public int lastIndexOf(@NotNull CharSequence text, int from) {
+    final int len = literal.length();
+    int i = Math.min(from, text.length() - len);
+    if (len == 0) {
+      return i;
+    }
+
+    if (ignoreCase) {
+      for (; i >= 0; i--) {
+        if (matchesAt(text, i)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    final char start = literal.charAt(0);
+    while (i >= 0) {
+      final char c = text.charAt(i);
+      if (c == start && matchesAt(text, i)) {
+        return i;
+      }
+      i -= backward[c & 0xFF];
+    }
+
+    return -1;
+  }
+
+  private boolean matchesAt(@NotNull CharSequence text, int offset) {
+    final int len = literal.length();
+    for (int i = 0; i < len; i++) {
+      final char c1 = text.charAt(offset + i);
+      final char c2 = literal.charAt(i);
+      if (c1 != c2 && (!ignoreCase || (Character.toLowerCase(c1) != Character.toLowerCase(c2) &&
+                                       Character.toUpperCase(c1) != Character.toUpperCase(c2)))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @NotNull private final String literal;
+  private final boolean ignoreCase;
+  @NotNull private final int[] forward;
+  @NotNull private final int[] backward;
+}
@@ -25,9 +25,15 @@ import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.helper.EditorHelper;
 import com.maddyhome.idea.vim.helper.MessageHelper;
 import com.maddyhome.idea.vim.helper.Msg;
+import com.maddyhome.idea.vim.option.NumberOption;
+import com.maddyhome.idea.vim.option.OptionChangeEvent;
+import com.maddyhome.idea.vim.option.OptionChangeListener;
+import com.maddyhome.idea.vim.option.Options;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
+
 public class RegExp {
   @Nullable public static reg_extmatch_T re_extmatch_out = null;
   @Nullable public static reg_extmatch_T re_extmatch_in = null;
@@ -126,6 +132,11 @@ public class RegExp {
   private static final int REX_SET = 1;
   private static final int REX_USE = 2;
 
+  /* Values of 'regexpengine' */
+  private static final int ENGINE_AUTO = 0;       /* NFA for patterns that make backtracking slow */
+  private static final int ENGINE_BACKTRACK = 1;  /* always the backtracking matcher */
+  private static final int ENGINE_NFA = 2;        /* NFA whenever the pattern allows it */
+
   private static final int MAX_LIMIT = Integer.MAX_VALUE;
 
   private static final int NOT_MULTI = 0;
@@ -165,6 +176,10 @@ public class RegExp {
      */
   private static final int NSUBEXP = 10;
 
+  /* Layout of the sub-expression array of an NFA thread: start lnum, start col,
+   * end lnum and end col of each sub-expression, followed by the start column. */
+  private static final int NFA_SEEDCOL = NSUBEXP * 4;
+
   private static final int MAGIC_NONE = 1;      /* "\V" very unmagic */
   private static final int MAGIC_OFF = 2;      /* "\M" or 'magic' off */
   private static final int MAGIC_ON = 3;      /* "\m" or 'magic' */
@@ -470,6 +485,7 @@ public class RegExp {
 
     r = new regprog_T();
     r.program = new StringBuffer();
+    r.program_start = new CharPointer(r.program);
 
     /*
          * Second pass: emit code.
@@ -502,6 +518,25 @@ public class RegExp {
         scan = regnext(scan);
       }
 
+      /*
+             * When no match can span lines, the longest literal string that must
+             * appear is searched for in the whole buffer to skip the lines that
+             * can't match (see vim_regcandidate()).
+             */
+      if (!flags.isSet(HASNL)) {
+        CharPointer lscan;
+        String literal = null;
+        for (lscan = scan; lscan != null; lscan = regnext(lscan)) {
+          if (lscan.OP() == EXACTLY) {
+            CharPointer so = lscan.OPERAND();
+            if (literal == null || so.strlen() >= literal.length()) {
+              literal = so.toString();
+            }
+          }
+        }
+        r.regliteral = literal;
+      }
+
       if (scan.OP() == EXACTLY) {
         r.regstart = scan.OPERAND().charAt();
       }
@@ -544,6 +579,10 @@ public class RegExp {
       }
     }
 
+    r.had_eol = had_eol;
+
+    nfa_analyze(r);
+
     if (logger.isDebugEnabled()) logger.debug(regdump(expr, r));
 
     return r;
@@ -579,6 +618,14 @@ public class RegExp {
     return had_eol;
   }
 
+  /*
+     * Restore the state vim_regcomp() leaves behind for "prog", as if it had just
+     * been compiled by this instance.  Used when the program comes from a cache.
+     */
+  void vim_regcomp_restore(@NotNull regprog_T prog) {
+    had_eol = prog.had_eol;
+  }
+
   /*
      * reg - regular expression, i.e. main body or parenthesized thing
      *
@@ -2032,7 +2079,18 @@ public class RegExp {
     }
 
     //return ml_get_buf(reg_buf, reg_firstlnum + lnum, false);
-    return new CharPointer(EditorHelper.getLineBuffer(reg_buf, reg_firstlnum + lnum));
+    return reg_getline(new CharPointer(""), lnum);
+  }
+
+  /*
+     * Point "ptr" to the line "lnum", which is relative to "reg_firstlnum". The pointer reads the document text
+     * directly, so no copy of the line is made.
+     */
+  @NotNull
+  private CharPointer reg_getline(@NotNull CharPointer ptr, int lnum) {
+    final int line = reg_firstlnum + lnum;
+    return ptr.reset(reg_buf.getDocument().getCharsSequence(), EditorHelper.getLineStartOffset(reg_buf, line),
+                     EditorHelper.getLineEndOffset(reg_buf, line, true));
   }
 
   /*
@@ -2085,6 +2143,52 @@ public class RegExp {
     return r;
   }
 
+  /*
+     * Find the first line at or after "lnum" (before when "dir" is -1) that can
+     * contain a match of "rmp->regprog".  The buffer text is searched for the
+     * literal string every match must contain, so the lines in between are never
+     * handed to the matcher.
+     *
+     * Return the line number, -1 if no line in that direction can match.
+     * Return "lnum" when the pattern has no such literal or can match a line break.
+     */
+  public static int vim_regcandidate(@NotNull regmmatch_T rmp, @NotNull Editor buf, int lnum, int dir) {
+    final regprog_T prog = rmp.regprog;
+    if (prog == null || prog.regliteral == null || lnum < 0) {
+      return lnum;
+    }
+
+    boolean ic = rmp.rmm_ic;
+    if ((prog.regflags & RF_ICASE) != 0) {
+      ic = true;
+    }
+    else if ((prog.regflags & RF_NOICASE) != 0) {
+      ic = false;
+    }
+
+    LiteralSearcher searcher = ic ? prog.regliteral_ic : prog.regliteral_cs;
+    if (searcher == null) {
+      searcher = new LiteralSearcher(prog.regliteral, ic);
+      if (ic) {
+        prog.regliteral_ic = searcher;
+      }
+      else {
+        prog.regliteral_cs = searcher;
+      }
+    }
+
+    final CharSequence chars = buf.getDocument().getCharsSequence();
+    final int offset;
+    if (dir > 0) {
+      offset = searcher.indexOf(chars, EditorHelper.getLineStartOffset(buf, lnum));
+    }
+    else {
+      offset = searcher.lastIndexOf(chars, EditorHelper.getLineEndOffset(buf, lnum, true) - prog.regliteral.length());
+    }
+
+    return offset < 0 ? -1 : buf.getDocument().getLineNumber(offset);
+  }
+
   /*
      * Match a regexp against a string ("line" points to the string) or multiple
      * lines ("line" is null, use reg_getline()).
@@ -2092,14 +2196,14 @@ public class RegExp {
   private int vim_regexec_both(CharPointer line, int col)
   /* column to start looking for match */ {
     regprog_T prog;
-    CharPointer s;
     int retval;
     reg_tofree = null;
     retval = 0;
 
     if (reg_match == null) {
       prog = reg_mmatch.regprog;
-      line = reg_getline(0);
+      /* The first line is read through a reused pointer, most lines of a search are rejected without any allocation */
+      line = reg_getline(reg_line_cursor, 0);
       reg_startpos = reg_mmatch.startpos;
       reg_endpos = reg_mmatch.endpos;
     }
@@ -2131,22 +2235,28 @@ public class RegExp {
     /* If there is a "must appear" string, look for it. */
     if (prog.regmust != null) {
       char c;
+      int i;
 
       c = prog.regmust.charAt();
-      s = line.ref(col);
-      while ((s = cstrchr(s, c)) != null) {
-        if (cstrncmp(s, prog.regmust, prog.regmlen) == 0) {
+      i = col;
+      while ((i = cstrchr_col(line, i, c)) >= 0) {
+        if (cstrneq_col(line, i, prog.regmust, prog.regmlen)) {
           break;          /* Found it. */
         }
-        s.inc();
+        i++;
       }
-      if (s == null)          /* Not present. */ {
+      if (i < 0)          /* Not present. */ {
         // goto theend;
         return retval;
       }
     }
 
-    regline = line.ref(0);
+    /* Patterns that can make the backtracking matcher slow are simulated instead */
+    if (reg_match == null && nfa_use(prog)) {
+      return nfa_regexec(prog, line, col);
+    }
+
+    regline = line;
     reglnum = 0;
     out_of_stack = false;
 
@@ -2168,12 +2278,11 @@ public class RegExp {
       while (!got_int && !out_of_stack) {
         if (prog.regstart != '\u0000') {
           /* Skip until the char we know it must start with. */
-          s = cstrchr(regline.ref(col), prog.regstart);
-          if (s == null) {
+          col = cstrchr_col(regline, col, prog.regstart);
+          if (col < 0) {
             retval = 0;
             break;
           }
-          col = s.pointer() - regline.pointer();
         }
 
         retval = regtry(prog, col);
@@ -2202,6 +2311,434 @@ public class RegExp {
     return retval;
   }
 
+  /*
+     * NFA engine
+     *
+     * Patterns without back references, look-around, \{} and \z() can also be
+     * matched by simulating all the ways the program can match at the same time
+     * (a Pike VM).  This takes time proportional to the size of the program
+     * times the length of the text, while the backtracking matcher can take
+     * exponential time for patterns like "\(a\|aa\)*b".  The threads are kept in
+     * priority order, so the match and sub-expressions found are the same as
+     * the ones the backtracking matcher finds.
+     */
+
+  /*
+     * Decide whether the NFA engine can execute the program and whether the
+     * program is likely to make the backtracking matcher slow: it loops over
+     * something that is not simple, has alternatives or more than one "*".
+     */
+  private void nfa_analyze(@NotNull regprog_T r) {
+    final int len = r.program.length();
+    final boolean[] visited = new boolean[len];
+    final int[] todo = new int[2 * len + 1];
+    int todo_len = 0;
+    int loops = 0;
+    boolean prefer = false;
+
+    todo[todo_len++] = 1;
+    while (todo_len > 0) {
+      final int pc = todo[--todo_len];
+      if (visited[pc]) {
+        continue;
+      }
+      visited[pc] = true;
+
+      final CharPointer scan = r.program_start.ref(pc);
+      final int op = scan.OP();
+      switch (op) {
+        case END:
+          continue;
+
+        case BRANCH: {
+          final CharPointer next = regnext(scan);
+          if (next != null && next.OP() == BRANCH) {
+            prefer = true;
+          }
+          todo[todo_len++] = scan.OPERAND().pointer();
+          break;
+        }
+
+        case BACK:
+          prefer = true;
+          break;
+
+        case STAR:
+        case PLUS:
+          if (!nfa_is_char(scan.OPERAND().OP())) {
+            return;
+          }
+          loops++;
+          break;
+
+        case BOL:
+        case EOL:
+        case RE_BOF:
+        case RE_EOF:
+        case BOW:
+        case EOW:
+        case NOTHING:
+        case NOPEN:
+        case NCLOSE:
+          break;
+
+        default:
+          if (!nfa_is_char(op) && !(op >= MOPEN && op < MOPEN + NSUBEXP) && !(op >= MCLOSE && op < MCLOSE + NSUBEXP)) {
+            return;
+          }
+          break;
+      }
+
+      final CharPointer next = regnext(scan);
+      if (next != null) {
+        todo[todo_len++] = next.pointer();
+      }
+    }
+
+    r.nfa_program = r.program.toString().toCharArray();
+    r.nfa_prefer = prefer || loops > 1;
+  }
+
+  /*
+     * Return true if "op" is a node that matches one character or line break,
+     * or a string of characters for EXACTLY.
+     */
+  private static boolean nfa_is_char(int op) {
+    return (op >= ANY && op <= NUPPER) || (op >= FIRST_NL && op <= LAST_NL) || op == EXACTLY || op == NEWL;
+  }
+
+  private static boolean nfa_use(@NotNull regprog_T prog) {
+    if (prog.nfa_program == null) {
+      return false;
+    }
+
+    final int engine = RegexpEngineOption.value;
+    return engine == ENGINE_NFA || (engine == ENGINE_AUTO && prog.nfa_prefer);
+  }
+
+  /*
+     * The value of 'regexpengine'. It is kept up to date by a listener instead
+     * of being looked up for every line the matcher tries.
+     */
+  private static class RegexpEngineOption {
+    private static volatile int value;
+
+    static {
+      final NumberOption option = (NumberOption)Options.getInstance().getOption("regexpengine");
+      option.addOptionChangeListener(new OptionChangeListener() {
+        @Override
+        public void valueChange(OptionChangeEvent event) {
+          value = option.value();
+        }
+      });
+      value = option.value();
+    }
+  }
+
+  /*
+     * The NFA version of the matching part of vim_regexec_both() for multiple
+     * lines.  "line" is the first line, "col" the column to start looking for
+     * a match.
+     * Returns 0 for failure, number of lines contained in the match otherwise.
+     */
+  private int nfa_regexec(@NotNull regprog_T prog, @NotNull CharPointer line, int col) {
+    final char[] program = prog.nfa_program;
+    final CharPointer node = new CharPointer("");
+    final nfa_list_T clist = new nfa_list_T(program.length + 1);  /* threads at the current position */
+    final nfa_list_T nlist = new nfa_list_T(program.length + 1);  /* threads that consumed the character */
+    boolean seeding = true;
+    int[] found = null;
+    int found_lnum = 0;
+    int found_col = 0;
+
+    regline = line;
+    reglnum = 0;
+    while (true) {
+      final char c = regline.charAt(col);
+
+      /* Follow the threads that consumed the previous character, then start a new one with the lowest priority */
+      clist.clear();
+      for (int i = 0; i < nlist.len; i++) {
+        nfa_addstate(clist, program, nlist.pc[i], nlist.k[i], nlist.subs[i], col);
+      }
+      if (seeding && found == null) {
+        final int[] subs = new int[NFA_SEEDCOL + 1];
+        Arrays.fill(subs, -1);
+        subs[NFA_SEEDCOL] = col;
+        nfa_addstate(clist, program, 1, 0, subs, col);
+        if (prog.reganch != 0) {
+          seeding = false;
+        }
+      }
+
+      nlist.clear();
+      final CharPointer input = regline.ref(col);
+      for (int i = 0; i < clist.len; i++) {
+        final int pc = clist.pc[i];
+        final int k = clist.k[i];
+        final int[] subs = clist.subs[i];
+        final int op = program[pc];
+
+        if (k == 0 && op == END) {
+          /* The threads after this one have a lower priority */
+          found = subs;
+          found_lnum = reglnum;
+          found_col = col;
+          break;
+        }
+
+        if (c == '\u0000') {
+          final int opnd = k < 0 ? program[pc + 3] : op;
+          if (reglnum == reg_maxline || (opnd != NEWL && !WITH_NL(opnd))) {
+            continue;
+          }
+        }
+        else if (k > 0 || (k == 0 && op == EXACTLY)) {
+          final char oc = program[pc + 3 + k];
+          if (oc != c && (!ireg_ic || Character.toLowerCase(oc) != Character.toLowerCase(c))) {
+            continue;
+          }
+          if (program[pc + 4 + k] != '\u0000') {
+            nlist.add(pc, k + 1, subs);
+            continue;
+          }
+        }
+        else {
+          reginput = input;
+          if (regrepeat(node.assign(prog.program_start).inc(k < 0 ? pc + 3 : pc), 1) != 1) {
+            continue;
+          }
+        }
+
+        if (k < 0) {
+          nlist.add(pc, -1, subs);
+        }
+        else {
+          nlist.add(nfa_next(program, pc), 0, subs);
+        }
+      }
+
+      if (c == '\u0000' && reglnum == reg_maxline) {
+        break;
+      }
+      if (nlist.len == 0 && (found != null || !seeding || c == '\u0000')) {
+        break;
+      }
+
+      if (c == '\u0000') {
+        regline = reg_getline(++reglnum);
+        col = 0;
+        seeding = false;
+      }
+      else {
+        col++;
+      }
+    }
+
+    if (found == null) {
+      return 0;
+    }
+
+    for (int i = 0; i < NSUBEXP; i++) {
+      reg_startpos[i].lnum = found[i * 4];
+      reg_startpos[i].col = found[i * 4 + 1];
+      reg_endpos[i].lnum = found[i * 4 + 2];
+      reg_endpos[i].col = found[i * 4 + 3];
+    }
+    if (reg_startpos[0].lnum < 0) {
+      reg_startpos[0].lnum = 0;
+      reg_startpos[0].col = found[NFA_SEEDCOL];
+    }
+    if (reg_endpos[0].lnum < 0) {
+      reg_endpos[0].lnum = found_lnum;
+      reg_endpos[0].col = found_col;
+    }
+    need_clear_subexpr = false;
+    re_extmatch_out = null;
+
+    return 1 + found_lnum;
+  }
+
+  /*
+     * Add the thread at node "pc" to "list", following all the nodes that don't
+     * consume a character at the current position: regline["col"] in line
+     * reglnum.  "k" is the index of the next character to match in EXACTLY, or
+     * -1 for the loop of a STAR or PLUS that has matched its operand.
+     */
+  private void nfa_addstate(@NotNull nfa_list_T list, @NotNull char[] program, int pc, int k, @NotNull int[] subs,
+                            int col) {
+    if (k != 0) {
+      if (k > 0) {
+        /* The rest of the string of an EXACTLY */
+        if (list.mark(pc + 3 + k)) {
+          list.add(pc, k, subs);
+        }
+      }
+      else {
+        /* A STAR or PLUS that matched its operand can match it again, or continue */
+        if (list.mark(pc + 1)) {
+          list.add(pc, -1, subs);
+        }
+        nfa_addstate(list, program, nfa_next(program, pc), 0, subs, col);
+      }
+      return;
+    }
+
+    if (!list.mark(pc)) {
+      return;
+    }
+
+    final int op = program[pc];
+    final char c = regline.charAt(col);
+    switch (op) {
+      case BRANCH: {
+        int branch = pc;
+        if (program[nfa_next(program, pc)] != BRANCH) {
+          nfa_addstate(list, program, pc + 3, 0, subs, col);
+        }
+        else {
+          do {
+            nfa_addstate(list, program, branch + 3, 0, subs, col);
+            branch = nfa_next(program, branch);
+          }
+          while (branch >= 0 && program[branch] == BRANCH);
+        }
+        return;
+      }
+
+      case BOL:
+        if (col != 0) {
+          return;
+        }
+        break;
+
+      case EOL:
+        if (c != '\u0000') {
+          return;
+        }
+        break;
+
+      case RE_BOF:
+        if (reglnum != 0 || col != 0 || reg_firstlnum > 0) {
+          return;
+        }
+        break;
+
+      case RE_EOF:
+        if (reglnum != reg_maxline || c != '\u0000') {
+          return;
+        }
+        break;
+
+      case BOW:
+        if (c == '\u0000' || !CharacterClasses.isWord(c) || (col > 0 && CharacterClasses.isWord(regline.charAt(col - 1)))) {
+          return;
+        }
+        break;
+
+      case EOW:
+        if (col == 0 || !CharacterClasses.isWord(regline.charAt(col - 1)) ||
+            (c != '\u0000' && CharacterClasses.isWord(c))) {
+          return;
+        }
+        break;
+
+      case NOTHING:
+      case BACK:
+      case NOPEN:
+      case NCLOSE:
+        break;
+
+      case STAR:
+        if (list.mark(pc + 1)) {
+          list.add(pc, -1, subs);
+        }
+        break;
+
+      case PLUS:
+        if (list.mark(pc + 1)) {
+          list.add(pc, -1, subs);
+        }
+        return;
+
+      default:
+        if (op >= MOPEN && op < MOPEN + NSUBEXP) {
+          final int[] copy = subs.clone();
+          copy[(op - MOPEN) * 4] = reglnum;
+          copy[(op - MOPEN) * 4 + 1] = col;
+          nfa_addstate(list, program, nfa_next(program, pc), 0, copy, col);
+        }
+        else if (op >= MCLOSE && op < MCLOSE + NSUBEXP) {
+          final int[] copy = subs.clone();
+          copy[(op - MCLOSE) * 4 + 2] = reglnum;
+          copy[(op - MCLOSE) * 4 + 3] = col;
+          nfa_addstate(list, program, nfa_next(program, pc), 0, copy, col);
+        }
+        else {
+          /* END or a node that consumes a character */
+          list.add(pc, 0, subs);
+        }
+        return;
+    }
+
+    nfa_addstate(list, program, nfa_next(program, pc), 0, subs, col);
+  }
+
+  /*
+     * regnext() for the copy of the program used by the NFA engine.
+     */
+  private static int nfa_next(@NotNull char[] program, int pc) {
+    final int offset = ((program[pc + 1] & 0xff) << 8) + (program[pc + 2] & 0xff);
+    if (offset == 0) {
+      return -1;
+    }
+
+    return program[pc] == BACK ? pc - offset : pc + offset;
+  }
+
+  /*
+     * List of NFA threads in priority order.  Each state of the program can be
+     * in the list once, the thread that reaches it first has the higher priority.
+     */
+  private static class nfa_list_T {
+    nfa_list_T(int size) {
+      pc = new int[size];
+      k = new int[size];
+      subs = new int[size][];
+      marks = new int[size];
+    }
+
+    void clear() {
+      len = 0;
+      generation++;
+    }
+
+    /*
+       * Mark the state "state" as added, return false if it was added before.
+       */
+    boolean mark(int state) {
+      if (marks[state] == generation) {
+        return false;
+      }
+      marks[state] = generation;
+      return true;
+    }
+
+    void add(int pc, int k, @NotNull int[] subs) {
+      this.pc[len] = pc;
+      this.k[len] = k;
+      this.subs[len] = subs;
+      len++;
+    }
+
+    @NotNull final int[] pc;
+    @NotNull final int[] k;
+    @NotNull final int[][] subs;
+    @NotNull final int[] marks;
+    int len;
+    int generation = 1;
+  }
+
   private static class reg_extmatch_T {
     @NotNull String[] matches = new String[NSUBEXP];
   }
@@ -2246,7 +2783,7 @@ public class RegExp {
       need_clear_zsubexpr = true;
     }
 
-    if (regmatch((new CharPointer(prog.program)).ref(1))) {
+    if (regmatch(reg_prog_cursor.assign(prog.program_start).inc())) {
       cleanup_subexpr();
       if (reg_match == null) {
         if (reg_startpos[0].lnum < 0) {
@@ -3739,6 +4276,42 @@ public class RegExp {
     return s1.strnicmp(s2, n);
   }
 
+  /*
+     * Find "c" in "line" starting at column "col", ignore case if ireg_ic set.
+     * Return the column of the character, -1 if it's not found before the end of the line.
+     * Works on columns so that scanning a line doesn't allocate a pointer for every candidate.
+     */
+  private int cstrchr_col(@NotNull CharPointer line, int col, char c) {
+    final char lc = Character.toLowerCase(c);
+    final char uc = Character.toUpperCase(c);
+    for (int i = col; ; i++) {
+      final char ch = line.charAt(i);
+      if (ch == '\u0000') {
+        return -1;
+      }
+      if (ch == c || (ireg_ic && (ch == lc || ch == uc))) {
+        return i;
+      }
+    }
+  }
+
+  /*
+     * Compare "n" characters of "line" at column "col" with "s", ignore case if ireg_ic set.
+     * Return true if they match.
+     */
+  private boolean cstrneq_col(@NotNull CharPointer line, int col, @NotNull CharPointer s, int n) {
+    for (int i = 0; i < n; i++) {
+      final char c1 = line.charAt(col + i);
+      final char c2 = s.charAt(i);
+      if (c1 != c2 && (!ireg_ic || (Character.toLowerCase(c1) != Character.toLowerCase(c2) &&
+                                    Character.toUpperCase(c1) != Character.toUpperCase(c2)))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
   /*
      * cstrchr: This function is used a lot for simple searches, keep it fast!
      */
@@ -4667,6 +5240,13 @@ public class RegExp {
     int regflags;
     char reghasz;
     StringBuffer program;
+    CharPointer program_start;    /* start of "program", copied before each match attempt */
+    @Nullable String regliteral;  /* literal every single-line match contains */
+    @Nullable LiteralSearcher regliteral_cs;  /* searchers for "regliteral", created on first use */
+    @Nullable LiteralSearcher regliteral_ic;
+    @Nullable char[] nfa_program; /* copy of "program" when the NFA engine can execute it */
+    boolean nfa_prefer;           /* the program is likely to make the backtracking matcher slow */
+    boolean had_eol;              /* "had_eol" of the vim_regcomp() call that compiled this program */
   }
 
   private static class MinMax {
@@ -4831,6 +5411,9 @@ public class RegExp {
 
   private regsave_T behind_pos;
 
+  @NotNull private final CharPointer reg_line_cursor = new CharPointer("");  /* reused for the first line of a match */
+  @NotNull private final CharPointer reg_prog_cursor = new CharPointer("");  /* reused program pointer for regtry() */
+
   @NotNull private CharPointer[] reg_startzp = new CharPointer[NSUBEXP];  /* Workspace to mark beginning */
   @NotNull private CharPointer[] reg_endzp = new CharPointer[NSUBEXP];    /*   and end of \z(...\) matches */
   @NotNull private lpos_T[] reg_startzpos = new lpos_T[NSUBEXP]; /* idem, beginning pos */
@@ -0,0 +1,127 @@
+/*
+ * IdeaVim - Vim emulator for IDEs based on the IntelliJ platform
+ * Copyright (C) 2003-2016 The IdeaVim authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.maddyhome.idea.vim.regexp;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of compiled regular expression programs.
+ * <p>
+ * A compiled program is never modified by the matcher, so the same instance can be shared between searches, search
+ * highlighting and substitutions. Case sensitivity is decided when the program is executed (see
+ * {@link RegExp.regmmatch_T#rmm_ic}), so only the pattern and its magic setting take part in the key. On a hit the
+ * compile-time state of the given regexp instance, such as {@link RegExp#vim_regcomp_had_eol()}, is restored from the
+ * cached program.
+ */
+public class RegExpCache {
+  private static final int MAX_SIZE = 64;
+
+  @NotNull private static final RegExpCache instance = new RegExpCache();
+
+  @NotNull
+  public static RegExpCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Returns the compiled program for the pattern, compiling it with the given regexp instance on a cache miss.
+   * Either way the regexp instance is left in the state {@link RegExp#vim_regcomp(String, int)} would leave it in.
+   * Patterns that fail to compile are not cached, so their error messages are reported every time.
+   */
+  @Nullable
+  public synchronized RegExp.regprog_T vim_regcomp(@NotNull RegExp regExp, @Nullable String expr, int magic) {
+    if (expr == null) {
+      return regExp.vim_regcomp(null, magic);
+    }
+
+    final Key key = new Key(expr, magic);
+    RegExp.regprog_T prog = cache.get(key);
+    if (prog != null) {
+      hits++;
+      regExp.vim_regcomp_restore(prog);
+      return prog;
+    }
+
+    misses++;
+    prog = regExp.vim_regcomp(expr, magic);
+    if (prog != null) {
+      cache.put(key, prog);
+    }
+    if (logger.isDebugEnabled()) logger.debug("regexp cache hits=" + hits + ", misses=" + misses);
+
+    return prog;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized void clear() {
+    cache.clear();
+    hits = 0;
+    misses = 0;
+  }
+
+  private static class Key {
+    public Key(@NotNull String pattern, int magic) {
+      this.pattern = pattern;
+      this.magic = magic != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      final Key key = (Key)o;
+      return magic == key.magic && pattern.equals(key.pattern);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * pattern.hashCode() + (magic ? 1 : 0);
+    }
+
+    @NotNull private final String pattern;
+    private final boolean magic;
+  }
+
+  private RegExpCache() {
+  }
+
+  @NotNull private final Map<Key, RegExp.regprog_T> cache = new LinkedHashMap<Key, RegExp.regprog_T>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, RegExp.regprog_T> eldest) {
+      return size() > MAX_SIZE;
+    }
+  };
+  private long hits;
+  private long misses;
+
+  private static final Logger logger = Logger.getInstance(RegExpCache.class.getName());
+}
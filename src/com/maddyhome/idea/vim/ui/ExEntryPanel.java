@@ -25,6 +25,11 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.colors.EditorColors;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
 import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.progress.util.ReadTask;
 import com.intellij.ui.DocumentAdapter;
 import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.group.MotionGroup;
@@ -38,6 +43,8 @@ import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 
@@ -45,6 +52,8 @@ import java.awt.event.ComponentEvent;
  * This is used to enter ex commands such as searches and "colon" commands
  */
 public class ExEntryPanel extends JPanel {
+  private static final int INC_SEARCH_DELAY = 50;
+
   public static ExEntryPanel getInstance() {
     if (instance == null) {
       instance = new ExEntryPanel();
@@ -86,6 +95,14 @@ public class ExEntryPanel extends JPanel {
         positionPanel();
       }
     };
+
+    incSearchTimer = new Timer(INC_SEARCH_DELAY, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        startIncrementalSearch();
+      }
+    });
+    incSearchTimer.setRepeats(false);
   }
 
   private void setFontForElements() {
@@ -124,6 +141,8 @@ public class ExEntryPanel extends JPanel {
       positionPanel();
       oldGlass.setVisible(true);
       if (isIncSearchEnabled(label)) {
+        incSearchPattern = null;
+        incSearchMatch = null;
         entry.getDocument().addDocumentListener(documentListener);
         verticalOffset = editor.getScrollingModel().getVerticalScrollOffset();
         horizontalOffset = editor.getScrollingModel().getHorizontalScrollOffset();
@@ -209,11 +228,14 @@ public class ExEntryPanel extends JPanel {
       oldGlass.setLayout(oldLayout);
       if (isIncSearchEnabled(label.getText())) {
         entry.getDocument().removeDocumentListener(documentListener);
+        incSearchTimer.stop();
+        cancelIncrementalSearch();
         final Editor editor = entry.getEditor();
         editor.getScrollingModel().scrollVertically(verticalOffset);
         editor.getScrollingModel().scrollHorizontally(horizontalOffset);
         if (incHighlighter != null) {
           editor.getMarkupModel().removeHighlighter(incHighlighter);
+          incHighlighter = null;
         }
       }
     }
@@ -245,26 +267,125 @@ public class ExEntryPanel extends JPanel {
   private int verticalOffset;
   private int horizontalOffset;
 
+  @NotNull private final Timer incSearchTimer;
+  @Nullable private ProgressIndicator incSearchProgress;
+  @Nullable private String incSearchPattern;
+  @Nullable private TextRange incSearchMatch;
+  private long incSearchStamp;
+
+  /**
+   * The search is started once the user stops typing for a moment, see {@link #startIncrementalSearch()}.
+   */
   @NotNull private final DocumentListener documentListener = new DocumentAdapter() {
     @Override
     protected void textChanged(DocumentEvent e) {
-      final Editor editor = entry.getEditor();
-      final boolean forwards = !label.getText().equals("?");
-      if (incHighlighter != null) {
-        editor.getMarkupModel().removeHighlighter(incHighlighter);
-      }
-      final String pattern = entry.getText();
-      final TextRange range = SearchGroup.findNext(editor, pattern, editor.getCaretModel().getOffset(), true, forwards);
-      if (range != null) {
-        final TextAttributes color = editor.getColorsScheme().getAttributes(EditorColors.SEARCH_RESULT_ATTRIBUTES);
-        incHighlighter = SearchGroup.highlightMatch(editor, range.getStartOffset(), range.getEndOffset());
-        incHighlighter.setErrorStripeMarkColor(color.getBackgroundColor());
-        incHighlighter.setErrorStripeTooltip(pattern);
-        MotionGroup.scrollPositionIntoView(editor, editor.offsetToVisualPosition(range.getStartOffset()), true);
-      }
+      incSearchTimer.restart();
     }
   };
 
+  /**
+   * Searches for the entered pattern in a cancellable background read task. A search still running for the previous
+   * pattern is cancelled. The highlighter is only updated on the event dispatch thread when the search is complete.
+   */
+  private void startIncrementalSearch() {
+    if (!active) {
+      return;
+    }
+    cancelIncrementalSearch();
+
+    final Editor editor = entry.getEditor();
+    final long stamp = editor.getDocument().getModificationStamp();
+    final boolean reuse = incSearchPattern != null && incSearchStamp == stamp;
+    final ProgressIndicator indicator = new ProgressIndicatorBase();
+    incSearchProgress = indicator;
+    ProgressIndicatorUtils.scheduleWithWriteActionPriority(indicator, new IncrementalSearchTask(
+      editor, entry.getText(), editor.getCaretModel().getOffset(), !label.getText().equals("?"),
+      reuse ? incSearchPattern : null, reuse ? incSearchMatch : null));
+  }
+
+  private void cancelIncrementalSearch() {
+    if (incSearchProgress != null) {
+      incSearchProgress.cancel();
+      incSearchProgress = null;
+    }
+  }
+
+  private void showIncrementalSearchMatch(@NotNull Editor editor, @NotNull String pattern, @Nullable TextRange range) {
+    if (incHighlighter != null) {
+      editor.getMarkupModel().removeHighlighter(incHighlighter);
+      incHighlighter = null;
+    }
+    if (range != null) {
+      final TextAttributes color = editor.getColorsScheme().getAttributes(EditorColors.SEARCH_RESULT_ATTRIBUTES);
+      incHighlighter = SearchGroup.highlightMatch(editor, range.getStartOffset(), range.getEndOffset());
+      incHighlighter.setErrorStripeMarkColor(color.getBackgroundColor());
+      incHighlighter.setErrorStripeTooltip(pattern);
+      MotionGroup.scrollPositionIntoView(editor, editor.offsetToVisualPosition(range.getStartOffset()), true);
+    }
+  }
+
+  private class IncrementalSearchTask extends ReadTask {
+    public IncrementalSearchTask(@NotNull Editor editor, @NotNull String pattern, int offset, boolean forwards,
+                                 @Nullable String previousPattern, @Nullable TextRange previousMatch) {
+      this.editor = editor;
+      this.pattern = pattern;
+      this.offset = offset;
+      this.forwards = forwards;
+      this.previousPattern = previousPattern;
+      this.previousMatch = previousMatch;
+    }
+
+    @Nullable
+    @Override
+    public Continuation performInReadAction(@NotNull final ProgressIndicator indicator) throws ProcessCanceledException {
+      if (editor.isDisposed()) {
+        return null;
+      }
+
+      final long stamp = editor.getDocument().getModificationStamp();
+      final TextRange range = SearchGroup.findNextIncrementally(editor, pattern, offset, true, forwards,
+                                                                previousPattern, previousMatch);
+
+      return new Continuation(new Runnable() {
+        @Override
+        public void run() {
+          if (incSearchProgress != indicator || editor.isDisposed()) {
+            return;
+          }
+          incSearchProgress = null;
+          if (editor.getDocument().getModificationStamp() != stamp) {
+            startIncrementalSearch();
+            return;
+          }
+          incSearchPattern = pattern;
+          incSearchMatch = range;
+          incSearchStamp = stamp;
+          showIncrementalSearchMatch(editor, pattern, range);
+        }
+      });
+    }
+
+    @Override
+    public void onCanceled(@NotNull final ProgressIndicator indicator) {
+      // Interrupted by a write action, the search is started again unless it has been replaced by a newer one
+      ApplicationManager.getApplication().invokeLater(new Runnable() {
+        @Override
+        public void run() {
+          if (incSearchProgress == indicator) {
+            startIncrementalSearch();
+          }
+        }
+      });
+    }
+
+    @NotNull private final Editor editor;
+    @NotNull private final String pattern;
+    private final int offset;
+    private final boolean forwards;
+    @Nullable private final String previousPattern;
+    @Nullable private final TextRange previousMatch;
+  }
+
   private boolean active;
 
   private static ExEntryPanel instance;
@@ -91,6 +91,8 @@ public class ExTextField extends JTextField {
     if (hkey != null) {
       history = VimPlugin.getHistory().getEntries(hkey, 0, 0);
       histIndex = history.size();
+      historyKey = hkey;
+      filterPrefix = null;
     }
   }
 
@@ -107,25 +109,33 @@ public class ExTextField extends JTextField {
     }
 
     if (filter) {
-      for (int i = histIndex + dir; i >= 0 && i <= history.size(); i += dir) {
-        String txt;
-        if (i == history.size()) {
-          txt = lastEntry;
-        }
-        else {
-          HistoryGroup.HistoryEntry entry = history.get(i);
-          txt = entry.getEntry();
-        }
-
-        if (txt.startsWith(lastEntry)) {
-          updateText(txt);
-          histIndex = i;
-
-          return;
-        }
+      if (!lastEntry.equals(filterPrefix)) {
+        filteredHistory = VimPlugin.getHistory().getEntries(historyKey, lastEntry);
+        filterPrefix = lastEntry;
       }
 
-      VimPlugin.indicateError();
+      // Both lists are ordered by the entry numbers, so the neighbours of the current entry are found by its number
+      final int number = histIndex < history.size() ? history.get(histIndex).getNumber() : Integer.MAX_VALUE;
+      int i = findEntry(filteredHistory, number);
+      if (isUp) {
+        i--;
+      }
+      else if (i < filteredHistory.size() && filteredHistory.get(i).getNumber() == number) {
+        i++;
+      }
+
+      if (i < 0 || i == filteredHistory.size() && histIndex == history.size()) {
+        VimPlugin.indicateError();
+      }
+      else if (i == filteredHistory.size()) {
+        updateText(lastEntry);
+        histIndex = history.size();
+      }
+      else {
+        final HistoryGroup.HistoryEntry entry = filteredHistory.get(i);
+        updateText(entry.getEntry());
+        histIndex = findEntry(history, entry.getNumber());
+      }
     }
     else {
       histIndex = histIndex + dir;
@@ -142,6 +152,24 @@ public class ExTextField extends JTextField {
     }
   }
 
+  /**
+   * Returns the index of the first entry with a number not less than the given one.
+   */
+  private static int findEntry(@NotNull List<HistoryGroup.HistoryEntry> entries, int number) {
+    int low = 0;
+    int high = entries.size();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (entries.get(mid).getNumber() < number) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   void setEditor(Editor editor, DataContext context) {
     this.editor = editor;
     this.context = context;
@@ -360,6 +388,9 @@ public class ExTextField extends JTextField {
   private String lastEntry;
   private List<HistoryGroup.HistoryEntry> history;
   private int histIndex = 0;
+  private String historyKey;
+  private String filterPrefix;
+  private List<HistoryGroup.HistoryEntry> filteredHistory;
   @Nullable private Action currentAction;
   // TODO - support block cursor for overwrite mode
   //private Caret origCaret;
@@ -16,7 +16,6 @@
 
 package com.xin.bookmarks;
 
-import com.intellij.codeInsight.daemon.GutterMark;
 import com.intellij.icons.AllIcons;
 import com.intellij.ide.IdeBundle;
 import com.intellij.ide.structureView.StructureViewBuilder;
@@ -44,13 +43,12 @@ import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
-import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.pom.Navigatable;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
-import com.intellij.reference.SoftReference;
 import com.intellij.ui.ColorUtil;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.RetrievableIcon;
@@ -67,19 +65,23 @@ import java.awt.dnd.DragSource;
 import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.Rectangle2D;
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
 
 import static com.intellij.util.ui.JBUI.ScaleType.OBJ_SCALE;
 import static java.lang.Math.ceil;
 
 public class Bookmark implements Navigatable, Comparable<Bookmark> {
   public static final Icon DEFAULT_ICON = new MyCheckedIcon();
+  /**
+   * The gutter highlighters of the bookmarks in a document. They are held by the document so that they live exactly as
+   * long as the document and its markup model do.
+   */
+  private static final Key<Map<Bookmark, RangeHighlighterEx>> HIGHLIGHTERS_KEY = Key.create("com/xin/bookmarks/highlighters");
 
   private final VirtualFile myFile;
   @NotNull private OpenFileDescriptor myTarget;
   private final Project myProject;
-  private Reference<RangeHighlighterEx> myHighlighterRef;
 
   private String myDescription;
   private char myMnemonic = 0;
@@ -149,7 +151,7 @@ public class Bookmark implements Navigatable, Comparable<Bookmark> {
     else {
       highlighter = null;
     }
-    myHighlighterRef = highlighter == null ? null : new WeakReference<>(highlighter);
+    setMyHighlighter(markup.getDocument(), highlighter);
     return highlighter;
   }
 
@@ -159,46 +161,35 @@ public class Bookmark implements Navigatable, Comparable<Bookmark> {
   }
 
   public void release() {
-      int line = getLine();
-      if (line < 0) {
-        return;
-      }
-      final Document document = getDocument();
-      if (document == null) return;
-      MarkupModelEx markup = (MarkupModelEx)DocumentMarkupModel.forDocument(document, myProject, true);
-      final Document markupDocument = markup.getDocument();
-      if (markupDocument.getLineCount() <= line) return;
-      RangeHighlighterEx highlighter = findMyHighlighter();
-      if (highlighter != null) {
-        myHighlighterRef = null;
-        highlighter.dispose();
-      }
+    final Document document = getDocument();
+    if (document == null) return;
+    // The document holds the highlighter and the bookmark strongly, so they are dropped whatever line it is on
+    RangeHighlighterEx highlighter = findMyHighlighter();
+    setMyHighlighter(document, null);
+    if (highlighter != null) {
+      highlighter.dispose();
+    }
   }
 
+  @Nullable
   private RangeHighlighterEx findMyHighlighter() {
     final Document document = getDocument();
     if (document == null) return null;
-    RangeHighlighterEx result = SoftReference.dereference(myHighlighterRef);
-    if (result != null) {
-      return result;
-    }
-    MarkupModelEx markup = (MarkupModelEx)DocumentMarkupModel.forDocument(document, myProject, true);
-    final Document markupDocument = markup.getDocument();
-    final int startOffset = 0;
-    final int endOffset = markupDocument.getTextLength();
-
-    final Ref<RangeHighlighterEx> found = new Ref<>();
-    markup.processRangeHighlightersOverlappingWith(startOffset, endOffset, highlighter -> {
-      GutterMark renderer = highlighter.getGutterIconRenderer();
-      if (renderer instanceof MyGutterIconRenderer && ((MyGutterIconRenderer)renderer).myBookmark == this) {
-        found.set(highlighter);
-        return false;
+    final Map<Bookmark, RangeHighlighterEx> highlighters = document.getUserData(HIGHLIGHTERS_KEY);
+    return highlighters == null ? null : highlighters.get(this);
+  }
+
+  private void setMyHighlighter(@NotNull Document document, @Nullable RangeHighlighterEx highlighter) {
+    Map<Bookmark, RangeHighlighterEx> highlighters = document.getUserData(HIGHLIGHTERS_KEY);
+    if (highlighter != null) {
+      if (highlighters == null) {
+        document.putUserData(HIGHLIGHTERS_KEY, highlighters = new HashMap<>());
       }
-      return true;
-    });
-    result = found.get();
-    myHighlighterRef = result == null ? null : new WeakReference<>(result);
-    return result;
+      highlighters.put(this, highlighter);
+    }
+    else if (highlighters != null && highlighters.remove(this) != null && highlighters.isEmpty()) {
+      document.putUserData(HIGHLIGHTERS_KEY, null);
+    }
   }
 
   public Icon getIcon() {
@@ -26,6 +26,8 @@ import com.intellij.openapi.editor.event.EditorMouseEventArea;
 import com.intellij.openapi.editor.ex.MarkupModelEx;
 import com.intellij.openapi.editor.impl.DocumentMarkupModel;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.project.DumbAwareRunnable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupManager;
@@ -52,9 +54,11 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.InputEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -73,6 +77,13 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
   private final Map<Trinity<VirtualFile, Integer, String>, Bookmark> myDeletedDocumentBookmarks =
     new HashMap<>();
   private final Map<Document, List<Trinity<Bookmark, Integer, String>>> myBeforeChangeData = new HashMap<>();
+  private final Map<VirtualFile, Bookmark> myFileBookmarks = new HashMap<>();
+  private final Bookmark[] myMnemonicBookmarks = new Bookmark[36];//0..9  + A..Z
+  // Saved bookmarks of files that haven't been loaded since the project was opened, by file URL
+  private final Map<String, List<PendingBookmark>> myPendingBookmarks = new LinkedHashMap<>();
+  private final PendingBookmark[] myPendingMnemonicBookmarks = new PendingBookmark[36];
+  // Positions of the loaded bookmarks in the saved state, they keep their place among the pending ones
+  private final Map<Bookmark, Integer> myStateOrders = new HashMap<>();
 
   private final MessageBus myBus;
   private final Project myProject;
@@ -105,21 +116,38 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
       public void documentCreated(@NotNull final Document document, PsiFile psiFile) {
         final VirtualFile file = FileDocumentManager.getInstance().getFile(document);
         if (file == null) return;
-        for (final Bookmark bookmark : myBookmarks) {
+        // The pending bookmarks get their highlighters when they are created, so they must not be handled again below
+        final List<Bookmark> bookmarks = new ArrayList<>();
+        for (Bookmark bookmark : myBookmarks) {
           if (Comparing.equal(bookmark.getFile(), file)) {
-            UIUtil.invokeLaterIfNeeded(() -> {
-              if (myProject.isDisposed()) return;
-              bookmark.createHighlighter((MarkupModelEx)DocumentMarkupModel.forDocument(document, myProject, true));
-              map(document, bookmark);
-            });
+            bookmarks.add(bookmark);
           }
         }
+        if (myPendingBookmarks.containsKey(file.getUrl())) {
+          UIUtil.invokeLaterIfNeeded(() -> {
+            if (myProject.isDisposed()) return;
+            loadPendingBookmarks(file);
+          });
+        }
+        for (final Bookmark bookmark : bookmarks) {
+          UIUtil.invokeLaterIfNeeded(() -> {
+            if (myProject.isDisposed()) return;
+            bookmark.createHighlighter((MarkupModelEx)DocumentMarkupModel.forDocument(document, myProject, true));
+            map(document, bookmark);
+          });
+        }
       }
 
       @Override
       public void fileCreated(@NotNull PsiFile file, @NotNull Document document) {
       }
     });
+    connection.subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerListener() {
+      @Override
+      public void fileOpened(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+        loadPendingBookmarks(file);
+      }
+    });
     mySortedState = UISettings.getInstance().getSortBookmarks();
     connection.subscribe(UISettingsListener.TOPIC, uiSettings -> {
       if (mySortedState != uiSettings.getSortBookmarks()) {
@@ -129,6 +157,10 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
     });
   }
 
+  /**
+   * The bookmarks of a document are kept sorted by line. Document changes move all of them in the same direction,
+   * so the order only has to be restored when a bookmark is added.
+   */
   private static void map(Document document, Bookmark bookmark) {
     if (document == null || bookmark == null) return;
     ApplicationManager.getApplication().assertIsDispatchThread();
@@ -136,7 +168,31 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
     if (list == null) {
       document.putUserData(BOOKMARKS_KEY, list = new ArrayList<>());
     }
-    list.add(bookmark);
+    list.add(firstOnOrAfterLine(list, bookmark.getLine() + 1), bookmark);
+  }
+
+  /**
+   * Returns the index of the first bookmark on or after the line in a list sorted by line.
+   */
+  private static int firstOnOrAfterLine(@NotNull List<Bookmark> bookmarks, int line) {
+    int low = 0;
+    int high = bookmarks.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (bookmarks.get(mid).getLine() < line) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int mnemonicIndex(char mnemonic) {
+    if (mnemonic >= '0' && mnemonic <= '9') return mnemonic - '0';
+    if (mnemonic >= 'A' && mnemonic <= 'Z') return mnemonic - 'A' + 10;
+    return -1;
   }
 
   private static void unmap(Document document, Bookmark bookmark) {
@@ -180,8 +236,13 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
 
   @NotNull
   public Bookmark addTextBookmark(@NotNull VirtualFile file, int lineIndex, @NotNull String description) {
+    return addTextBookmark(file, lineIndex, description, 0);
+  }
+
+  @NotNull
+  private Bookmark addTextBookmark(@NotNull VirtualFile file, int lineIndex, @NotNull String description, int index) {
     Bookmark b = new Bookmark(myProject, file, lineIndex, description);
-    myBookmarks.add(0, b);
+    myBookmarks.add(index, b);
     map(b.getDocument(), b);
     myBus.syncPublisher(BookmarksListener.TOPIC).bookmarkAdded(b);
     return b;
@@ -206,8 +267,14 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
     if (file == null) return null;
     if (findFileBookmark(file) != null) return null;
 
+    return addFileBookmark(file, description, 0);
+  }
+
+  @NotNull
+  private Bookmark addFileBookmark(@NotNull VirtualFile file, @NotNull String description, int index) {
     Bookmark b = new Bookmark(myProject, file, -1, description);
-    myBookmarks.add(0, b);
+    myBookmarks.add(index, b);
+    myFileBookmarks.put(file, b);
     myBus.syncPublisher(BookmarksListener.TOPIC).bookmarkAdded(b);
     return b;
   }
@@ -215,6 +282,7 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
 
   @NotNull
   public List<Bookmark> getValidBookmarks() {
+    loadAllPendingBookmarks();
     List<Bookmark> answer = new ArrayList<>();
     for (Bookmark bookmark : myBookmarks) {
       if (bookmark.isValid()) answer.add(bookmark);
@@ -230,10 +298,9 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
   public Bookmark findEditorBookmark(@NotNull Document document, int line) {
     List<Bookmark> bookmarks = document.getUserData(BOOKMARKS_KEY);
     if (bookmarks != null) {
-      for (Bookmark bookmark : bookmarks) {
-        if (bookmark.getLine() == line) {
-          return bookmark;
-        }
+      int index = firstOnOrAfterLine(bookmarks, line);
+      if (index < bookmarks.size() && bookmarks.get(index).getLine() == line) {
+        return bookmarks.get(index);
       }
     }
 
@@ -242,25 +309,40 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
 
   @Nullable
   public Bookmark findFileBookmark(@NotNull VirtualFile file) {
-    for (Bookmark bookmark : myBookmarks) {
-      if (Comparing.equal(bookmark.getFile(), file) && bookmark.getLine() == -1) return bookmark;
-    }
-
-    return null;
+    loadPendingBookmarks(file);
+    return myFileBookmarks.get(file);
   }
 
   @Nullable
   public Bookmark findBookmarkForMnemonic(char m) {
     final char mm = Character.toUpperCase(m);
-    for (Bookmark bookmark : myBookmarks) {
-      if (mm == bookmark.getMnemonic()) return bookmark;
+    final int index = mnemonicIndex(mm);
+    if (index >= 0) {
+      final PendingBookmark pending = myPendingMnemonicBookmarks[index];
+      if (pending != null) {
+        final VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(pending.url);
+        if (file != null) {
+          loadPendingBookmarks(file);
+        }
+        else {
+          removePendingBookmark(pending);
+        }
+      }
+      return myMnemonicBookmarks[index];
     }
     return null;
   }
 
+  /**
+   * Every bookmark with a mnemonic is in {@link #myMnemonicBookmarks} or {@link #myPendingMnemonicBookmarks}, since
+   * {@link #setMnemonic(Bookmark, char)} only accepts the mnemonics that have a slot there.
+   */
   public boolean hasBookmarksWithMnemonics() {
-    for (Bookmark bookmark : myBookmarks) {
-      if (bookmark.getMnemonic() != 0) return true;
+    for (Bookmark bookmark : myMnemonicBookmarks) {
+      if (bookmark != null) return true;
+    }
+    for (PendingBookmark bookmark : myPendingMnemonicBookmarks) {
+      if (bookmark != null) return true;
     }
 
     return false;
@@ -268,7 +350,13 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
 
   public void removeBookmark(@NotNull Bookmark bookmark) {
     if (myBookmarks.remove(bookmark)) {
+      myStateOrders.remove(bookmark);
       unmap(bookmark.getDocument(), bookmark);
+      myFileBookmarks.remove(bookmark.getFile(), bookmark);
+      final int index = mnemonicIndex(bookmark.getMnemonic());
+      if (index >= 0 && myMnemonicBookmarks[index] == bookmark) {
+        myMnemonicBookmarks[index] = null;
+      }
       bookmark.release();
       myBus.syncPublisher(BookmarksListener.TOPIC).bookmarkRemoved(bookmark);
     }
@@ -289,12 +377,22 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
         unmap(bookmark.getDocument(), bookmark);
       }
       myBookmarks.clear();
+      myFileBookmarks.clear();
+      Arrays.fill(myMnemonicBookmarks, null);
+      myPendingBookmarks.clear();
+      Arrays.fill(myPendingMnemonicBookmarks, null);
+      myStateOrders.clear();
 
       readExternal(state);
     });
   }
 
+  /**
+   * Only remembers the saved bookmarks. A bookmark gets its descriptor and gutter highlighter when the document of
+   * its file is loaded, or when it's looked up by mnemonic or listed.
+   */
   private void readExternal(Element element) {
+    int order = 0;
     for (final Object o : element.getChildren()) {
       Element bookmarkElement = (Element)o;
 
@@ -303,60 +401,175 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
         String line = bookmarkElement.getAttributeValue("line");
         String description = StringUtil.notNullize(bookmarkElement.getAttributeValue("description"));
         String mnemonic = bookmarkElement.getAttributeValue("mnemonic");
+        if (url == null) continue;
 
-        Bookmark b = null;
-        VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(url);
-        if (file != null) {
-          if (line != null) {
-            try {
-              int lineIndex = Integer.parseInt(line);
-              b = addTextBookmark(file, lineIndex, description);
-            }
-            catch (NumberFormatException e) {
-              // Ignore. Will miss bookmark if line number cannot be parsed
-            }
+        int lineIndex = -1;
+        if (line != null) {
+          try {
+            lineIndex = Integer.parseInt(line);
           }
-          else {
-            b = addFileBookmark(file, description);
+          catch (NumberFormatException e) {
+            continue; // Ignore. Will miss bookmark if line number cannot be parsed
           }
         }
 
-        if (b != null && mnemonic != null && mnemonic.length() == 1) {
-          setMnemonic(b, mnemonic.charAt(0));
+        PendingBookmark b = new PendingBookmark(url, lineIndex, description, order++);
+        myPendingBookmarks.computeIfAbsent(url, k -> new ArrayList<>()).add(b);
+
+        if (mnemonic != null && mnemonic.length() == 1) {
+          b.mnemonic = Character.toUpperCase(mnemonic.charAt(0));
+          int index = mnemonicIndex(b.mnemonic);
+          if (index >= 0) {
+            PendingBookmark old = myPendingMnemonicBookmarks[index];
+            if (old != null) removePendingBookmark(old);
+            myPendingMnemonicBookmarks[index] = b;
+          }
         }
       }
     }
-  }
 
-  private void writeExternal(Element element) {
-    List<Bookmark> reversed = new ArrayList<>(myBookmarks);
-    Collections.reverse(reversed);
+    for (VirtualFile file : FileEditorManager.getInstance(myProject).getOpenFiles()) {
+      loadPendingBookmarks(file);
+    }
+  }
 
-    for (Bookmark bookmark : reversed) {
-      if (!bookmark.isValid()) continue;
-      Element bookmarkElement = new Element("bookmark");
+  private void loadPendingBookmarks(@NotNull VirtualFile file) {
+    List<PendingBookmark> pending = myPendingBookmarks.remove(file.getUrl());
+    if (pending == null) return;
 
-      bookmarkElement.setAttribute("url", bookmark.getFile().getUrl());
+    for (PendingBookmark p : pending) {
+      int index = mnemonicIndex(p.mnemonic);
+      if (index >= 0 && myPendingMnemonicBookmarks[index] == p) {
+        myPendingMnemonicBookmarks[index] = null;
+      }
 
-      String description = bookmark.getNotEmptyDescription();
-      if (description != null) {
-        bookmarkElement.setAttribute("description", description);
+      final Bookmark b;
+      if (p.line >= 0) {
+        b = addTextBookmark(file, p.line, p.description, getLoadIndex(p.order));
+      }
+      else {
+        b = findFileBookmark(file) == null ? addFileBookmark(file, p.description, getLoadIndex(p.order)) : null;
+      }
+      if (b == null) continue;
+      myStateOrders.put(b, p.order);
+      if (p.mnemonic != 0) {
+        setMnemonic(b, p.mnemonic);
       }
+    }
+  }
+
+  /**
+   * Returns the index in {@link #myBookmarks} for a saved bookmark that is loaded. The list is ordered from the newest
+   * bookmark to the oldest one, so it goes before the first loaded bookmark that was saved before it.
+   */
+  private int getLoadIndex(int order) {
+    for (int i = 0; i < myBookmarks.size(); i++) {
+      final Integer other = myStateOrders.get(myBookmarks.get(i));
+      if (other != null && other < order) return i;
+    }
+    return myBookmarks.size();
+  }
 
-      int line = bookmark.getLine();
-      if (line >= 0) {
-        bookmarkElement.setAttribute("line", String.valueOf(line));
+  private void loadAllPendingBookmarks() {
+    for (String url : new ArrayList<>(myPendingBookmarks.keySet())) {
+      VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(url);
+      if (file != null) {
+        loadPendingBookmarks(file);
       }
+      else {
+        for (PendingBookmark p : myPendingBookmarks.remove(url)) {
+          int index = mnemonicIndex(p.mnemonic);
+          if (index >= 0 && myPendingMnemonicBookmarks[index] == p) {
+            myPendingMnemonicBookmarks[index] = null;
+          }
+        }
+      }
+    }
+  }
+
+  private void removePendingBookmark(@NotNull PendingBookmark bookmark) {
+    List<PendingBookmark> list = myPendingBookmarks.get(bookmark.url);
+    if (list != null && list.remove(bookmark) && list.isEmpty()) {
+      myPendingBookmarks.remove(bookmark.url);
+    }
+    int index = mnemonicIndex(bookmark.mnemonic);
+    if (index >= 0 && myPendingMnemonicBookmarks[index] == bookmark) {
+      myPendingMnemonicBookmarks[index] = null;
+    }
+  }
+
+  /**
+   * Writes the bookmarks from the oldest to the newest. The pending bookmarks are put where {@link #getLoadIndex(int)}
+   * would insert them, so saving and loading the state doesn't change the order of the bookmarks.
+   */
+  private void writeExternal(Element element) {
+    List<PendingBookmark> pending = new ArrayList<>();
+    for (List<PendingBookmark> list : myPendingBookmarks.values()) {
+      pending.addAll(list);
+    }
+    pending.sort((p1, p2) -> Integer.compare(p2.order, p1.order));
 
-      char mnemonic = bookmark.getMnemonic();
-      if (mnemonic != 0) {
-        bookmarkElement.setAttribute("mnemonic", String.valueOf(mnemonic));
+    List<Element> elements = new ArrayList<>();
+    int next = 0;
+    for (Bookmark bookmark : myBookmarks) {
+      Integer order = myStateOrders.get(bookmark);
+      while (order != null && next < pending.size() && pending.get(next).order > order) {
+        elements.add(writePendingBookmark(pending.get(next++)));
       }
+      if (bookmark.isValid()) {
+        elements.add(writeBookmark(bookmark));
+      }
+    }
+    while (next < pending.size()) {
+      elements.add(writePendingBookmark(pending.get(next++)));
+    }
 
+    Collections.reverse(elements);
+    for (Element bookmarkElement : elements) {
       element.addContent(bookmarkElement);
     }
   }
 
+  @NotNull
+  private static Element writePendingBookmark(@NotNull PendingBookmark bookmark) {
+    Element bookmarkElement = new Element("bookmark");
+    bookmarkElement.setAttribute("url", bookmark.url);
+    if (!bookmark.description.isEmpty()) {
+      bookmarkElement.setAttribute("description", bookmark.description);
+    }
+    if (bookmark.line >= 0) {
+      bookmarkElement.setAttribute("line", String.valueOf(bookmark.line));
+    }
+    if (bookmark.mnemonic != 0) {
+      bookmarkElement.setAttribute("mnemonic", String.valueOf(bookmark.mnemonic));
+    }
+    return bookmarkElement;
+  }
+
+  @NotNull
+  private static Element writeBookmark(@NotNull Bookmark bookmark) {
+    Element bookmarkElement = new Element("bookmark");
+
+    bookmarkElement.setAttribute("url", bookmark.getFile().getUrl());
+
+    String description = bookmark.getNotEmptyDescription();
+    if (description != null) {
+      bookmarkElement.setAttribute("description", description);
+    }
+
+    int line = bookmark.getLine();
+    if (line >= 0) {
+      bookmarkElement.setAttribute("line", String.valueOf(line));
+    }
+
+    char mnemonic = bookmark.getMnemonic();
+    if (mnemonic != 0) {
+      bookmarkElement.setAttribute("mnemonic", String.valueOf(mnemonic));
+    }
+
+    return bookmarkElement;
+  }
+
   /**
    * Try to move bookmark one position up in the list
    *
@@ -398,22 +611,37 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
   @Nullable
   public Bookmark findLineBookmark(@NotNull Editor editor, boolean isWrapped, boolean next) {
     List<Bookmark> bookmarksForDocument = editor.getDocument().getUserData(BOOKMARKS_KEY);
-    if (bookmarksForDocument == null) return null;
-    int sign = next ? 1 : -1;
-    Collections.sort(bookmarksForDocument, (o1, o2) -> sign * (o1.getLine() - o2.getLine()));
+    if (bookmarksForDocument == null || bookmarksForDocument.isEmpty()) return null;
     int caretLine = editor.getCaretModel().getLogicalPosition().line;
-    for (Bookmark bookmark : bookmarksForDocument) {
-      if (next && bookmark.getLine() > caretLine) return bookmark;
-      if (!next && bookmark.getLine() < caretLine) return bookmark;
+    if (next) {
+      int index = firstOnOrAfterLine(bookmarksForDocument, caretLine + 1);
+      if (index < bookmarksForDocument.size()) return bookmarksForDocument.get(index);
+      return isWrapped ? bookmarksForDocument.get(0) : null;
     }
-    return isWrapped && !bookmarksForDocument.isEmpty() ? bookmarksForDocument.get(0) : null;
+    int index = firstOnOrAfterLine(bookmarksForDocument, caretLine) - 1;
+    if (index >= 0) return bookmarksForDocument.get(index);
+    return isWrapped ? bookmarksForDocument.get(bookmarksForDocument.size() - 1) : null;
   }
 
+  /**
+   * Sets the mnemonic of the bookmark, removing the bookmark that had it before. Only digits and letters can be
+   * mnemonics, any other character clears the mnemonic of the bookmark.
+   */
   public void setMnemonic(@NotNull Bookmark bookmark, char c) {
-    final Bookmark old = findBookmarkForMnemonic(c);
-    if (old != null) removeBookmark(old);
+    final int index = mnemonicIndex(Character.toUpperCase(c));
+    if (index >= 0) {
+      final Bookmark old = findBookmarkForMnemonic(c);
+      if (old != null && old != bookmark) removeBookmark(old);
+    }
 
-    bookmark.setMnemonic(c);
+    final int oldIndex = mnemonicIndex(bookmark.getMnemonic());
+    if (oldIndex >= 0 && myMnemonicBookmarks[oldIndex] == bookmark) {
+      myMnemonicBookmarks[oldIndex] = null;
+    }
+    bookmark.setMnemonic(index >= 0 ? c : 0);
+    if (index >= 0) {
+      myMnemonicBookmarks[index] = bookmark;
+    }
     myBus.syncPublisher(BookmarksListener.TOPIC).bookmarkChanged(bookmark);
   }
 
@@ -429,6 +657,24 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
   }
 
 
+  /**
+   * A saved bookmark whose file hasn't been loaded yet
+   */
+  private static class PendingBookmark {
+    private final String url;
+    private final int line;
+    private final String description;
+    private final int order;
+    private char mnemonic;
+
+    private PendingBookmark(@NotNull String url, int line, @NotNull String description, int order) {
+      this.url = url;
+      this.line = line;
+      this.description = description;
+      this.order = order;
+    }
+  }
+
   private class MyEditorMouseListener extends EditorMouseAdapter {
     @Override
     public void mouseClicked(final EditorMouseEvent e) {
@@ -456,75 +702,73 @@ public class BookmarkManager implements PersistentStateComponent<Element> {
   private class MyDocumentListener implements DocumentListener {
     @Override
     public void beforeDocumentChange(DocumentEvent e) {
-      for (Bookmark bookmark : myBookmarks) {
-        Document doc = bookmark.getDocument();
-        if (doc == null || doc != e.getDocument()) continue;
-        if (bookmark.getLine() == -1) continue;
+      Document doc = e.getDocument();
+      List<Bookmark> bookmarks = doc.getUserData(BOOKMARKS_KEY);
+      if (bookmarks == null) return;
+      // Only the bookmarks on the changed lines can be deleted or end up on the same line
+      int startLine = doc.getLineNumber(e.getOffset());
+      int endLine = doc.getLineNumber(e.getOffset() + e.getOldLength());
+      for (int i = firstOnOrAfterLine(bookmarks, startLine); i < bookmarks.size(); i++) {
+        Bookmark bookmark = bookmarks.get(i);
+        int line = bookmark.getLine();
+        if (line > endLine) break;
         List<Trinity<Bookmark, Integer, String>> list = myBeforeChangeData.get(doc);
         if (list == null) {
           myBeforeChangeData.put(doc, list = new ArrayList<>());
         }
         list.add(new Trinity<>(bookmark,
-                               bookmark.getLine(),
-                               doc.getText(new TextRange(doc.getLineStartOffset(bookmark.getLine()),
-                                                         doc.getLineEndOffset(bookmark.getLine())))));
+                               line,
+                               doc.getText(new TextRange(doc.getLineStartOffset(line), doc.getLineEndOffset(line)))));
       }
     }
 
-    private boolean isDuplicate(Bookmark bookmark, @Nullable List<Bookmark> toRemove) {
-      for (Bookmark b : myBookmarks) {
+    /**
+     * Checks if a bookmark that was on the changed lines shares its line with another one. Bookmarks on other lines
+     * are moved together with the changed lines, so they can't be on the same line. Of several bookmarks on one line
+     * the oldest one is kept.
+     */
+    private boolean isDuplicate(Bookmark bookmark, @NotNull List<Trinity<Bookmark, Integer, String>> changed) {
+      for (Trinity<Bookmark, Integer, String> trinity : changed) {
+        Bookmark b = trinity.first;
         if (b == bookmark) continue;
         if (!b.isValid()) continue;
-        if (Comparing.equal(b.getFile(), bookmark.getFile()) && b.getLine() == bookmark.getLine()) {
-          if (toRemove == null || !toRemove.contains(b)) {
-            return true;
-          }
+        if (b.getLine() == bookmark.getLine() && myBookmarks.indexOf(b) > myBookmarks.indexOf(bookmark)) {
+          return true;
         }
       }
       return false;
     }
 
-    private void moveToDeleted(Bookmark bookmark) {
-      List<Trinity<Bookmark, Integer, String>> list = myBeforeChangeData.get(bookmark.getDocument());
-
-      if (list != null) {
-        for (Trinity<Bookmark, Integer, String> trinity : list) {
-          if (trinity.first == bookmark) {
-            removeBookmark(bookmark);
-            myDeletedDocumentBookmarks.put(new Trinity<>(bookmark.getFile(), trinity.second, trinity.third), bookmark);
-            break;
-          }
-        }
-      }
+    private void moveToDeleted(Trinity<Bookmark, Integer, String> trinity) {
+      Bookmark bookmark = trinity.first;
+      removeBookmark(bookmark);
+      myDeletedDocumentBookmarks.put(new Trinity<>(bookmark.getFile(), trinity.second, trinity.third), bookmark);
     }
 
     @Override
     public void documentChanged(DocumentEvent e) {
+      List<Trinity<Bookmark, Integer, String>> changed = myBeforeChangeData.remove(e.getDocument());
       if (!ApplicationManager.getApplication().isDispatchThread()) {
         return;// Changes in lightweight documents are irrelevant to bookmarks and have to be ignored
       }
-      List<Bookmark> bookmarksToRemove = null;
-      for (Bookmark bookmark : myBookmarks) {
-        if (!bookmark.isValid() || isDuplicate(bookmark, bookmarksToRemove)) {
-          if (bookmarksToRemove == null) {
-            bookmarksToRemove = new ArrayList<>();
+      if (changed != null) {
+        List<Trinity<Bookmark, Integer, String>> bookmarksToRemove = null;
+        for (Trinity<Bookmark, Integer, String> trinity : changed) {
+          if (!trinity.first.isValid() || isDuplicate(trinity.first, changed)) {
+            if (bookmarksToRemove == null) {
+              bookmarksToRemove = new ArrayList<>();
+            }
+            bookmarksToRemove.add(trinity);
           }
-          bookmarksToRemove.add(bookmark);
         }
-      }
 
-      if (bookmarksToRemove != null) {
-        for (Bookmark bookmark : bookmarksToRemove) {
-          if (bookmark.getDocument() == e.getDocument()) {
-            moveToDeleted(bookmark);
-          } else {
-            removeBookmark(bookmark);
+        if (bookmarksToRemove != null) {
+          for (Trinity<Bookmark, Integer, String> trinity : bookmarksToRemove) {
+            moveToDeleted(trinity);
           }
         }
       }
 
-      myBeforeChangeData.remove(e.getDocument());
-
       for (Iterator<Map.Entry<Trinity<VirtualFile, Integer, String>, Bookmark>> iterator = myDeletedDocumentBookmarks.entrySet().iterator();
            iterator.hasNext(); ) {
         Map.Entry<Trinity<VirtualFile, Integer, String>, Bookmark> entry = iterator.next();
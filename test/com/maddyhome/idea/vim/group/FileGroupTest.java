@@ -0,0 +1,51 @@
+package com.maddyhome.idea.vim.group;
+
+import com.intellij.openapi.project.DumbServiceImpl;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PsiTestUtil;
+import com.maddyhome.idea.vim.VimPlugin;
+import org.jetbrains.plugins.ideavim.VimTestCase;
+
+public class FileGroupTest extends VimTestCase {
+  public void testFindFileByNamePrefersLeastNested() {
+    myFixture.addFileToProject("b/c/dup.txt", "");
+    myFixture.addFileToProject("z/dup.txt", "");
+    final VirtualFile expected = myFixture.addFileToProject("a/dup.txt", "").getVirtualFile();
+    assertEquals(expected, findFile("dup.txt"));
+  }
+
+  public void testFindFileByNameWhileIndexing() {
+    myFixture.addFileToProject("b/c/dup.txt", "");
+    myFixture.addFileToProject("z/dup.txt", "");
+    final VirtualFile expected = myFixture.addFileToProject("a/dup.txt", "").getVirtualFile();
+    final DumbServiceImpl dumbService = DumbServiceImpl.getInstance(getProject());
+    dumbService.setDumb(true);
+    try {
+      assertEquals(expected, findFile("dup.txt"));
+    }
+    finally {
+      dumbService.setDumb(false);
+    }
+  }
+
+  public void testFindFileByNameInExcludedFolder() {
+    final VirtualFile expected = myFixture.addFileToProject("out/excluded.txt", "").getVirtualFile();
+    final VirtualFile excluded = expected.getParent();
+    PsiTestUtil.addExcludedRoot(myFixture.getModule(), excluded);
+    try {
+      assertEquals(expected, findFile("excluded.txt"));
+    }
+    finally {
+      PsiTestUtil.removeExcludedRoot(myFixture.getModule(), excluded);
+    }
+  }
+
+  private VirtualFile findFile(String filename) {
+    return VimPlugin.getFile().findFile(filename, getProject());
+  }
+
+  private Project getProject() {
+    return myFixture.getProject();
+  }
+}
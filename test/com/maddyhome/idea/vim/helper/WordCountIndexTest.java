@@ -0,0 +1,68 @@
+package com.maddyhome.idea.vim.helper;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.ideavim.VimTestCase;
+
+import java.util.Random;
+
+public class WordCountIndexTest extends VimTestCase {
+  private static final String[] PIECES = {"a", "bc", " ", "  ", "\t", "\n", "\n\n", "x.y", "foo ", "-"};
+
+  // Blocks of one to three lines, so the WORD starts of most blocks are remembered and skipped by the next count
+  public void testRandomEditsMatchFullScan() {
+    for (int seed = 0; seed < 20; seed++) {
+      final Random random = new Random(seed);
+      configureByText(randomText(random, random.nextInt(60)) + "\n");
+      final Document document = myFixture.getEditor().getDocument();
+      final WordCountIndex index = new WordCountIndex(1 + random.nextInt(3));
+      document.addDocumentListener(index);
+      try {
+        for (int i = 0; i < 50; i++) {
+          if (i > 0) {
+            randomEdit(random, document);
+          }
+          for (int j = 0; j < 4; j++) {
+            assertSameCount(document, index, random.nextInt(document.getTextLength()));
+          }
+        }
+      }
+      finally {
+        document.removeDocumentListener(index);
+      }
+    }
+  }
+
+  private static void assertSameCount(@NotNull Document document, @NotNull WordCountIndex index, int offset) {
+    final CharSequence chars = document.getCharsSequence();
+    final SearchHelper.CountPosition expected = SearchHelper.countWords(chars, 0, chars.length() - 1, offset);
+    final SearchHelper.CountPosition actual = index.count(document, offset);
+    final String message = "offset " + offset + " in \"" + chars + "\"";
+    assertEquals(message, expected.getCount(), actual.getCount());
+    assertEquals(message, expected.getPosition(), actual.getPosition());
+  }
+
+  // The final newline is kept, like in the files the word count is used for
+  private void randomEdit(@NotNull final Random random, @NotNull final Document document) {
+    final int length = document.getTextLength();
+    final int start = random.nextInt(length);
+    final int end = random.nextInt(4) == 0 ? start : Math.min(length - 1, start + random.nextInt(6));
+    final String replacement = random.nextInt(3) == 0 ? "" : randomText(random, random.nextInt(5));
+    WriteCommandAction.runWriteCommandAction(myFixture.getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.replaceString(start, end, replacement);
+      }
+    });
+  }
+
+  @NotNull
+  private static String randomText(@NotNull Random random, int pieces) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < pieces; i++) {
+      builder.append(PIECES[random.nextInt(PIECES.length)]);
+    }
+    return builder.toString();
+  }
+}
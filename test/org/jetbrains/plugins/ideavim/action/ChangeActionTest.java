@@ -543,6 +543,20 @@ public class ChangeActionTest extends VimTestCase {
            "fo<caret>o quux\n");
   }
 
+  // |i|
+  public void testInsertWithCount() {
+    doTest(parseKeys("3i", "ab", "<Esc>"),
+           "<caret>foo\n",
+           "ababa<caret>bfoo\n");
+  }
+
+  // |i|
+  public void testInsertWithCountAndBackspace() {
+    doTest(parseKeys("3i", "abx", "<BS>", "<Esc>"),
+           "<caret>foo\n",
+           "ababa<caret>bfoo\n");
+  }
+
   // VIM-511 |.|
   public void testRepeatWithParensAndQuotesAutoInsertion() {
     configureByJavaText("class C <caret>{\n" +
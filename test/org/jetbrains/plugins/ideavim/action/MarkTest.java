@@ -1,9 +1,12 @@
 package org.jetbrains.plugins.ideavim.action;
 
 import com.maddyhome.idea.vim.VimPlugin;
+import com.maddyhome.idea.vim.common.Jump;
 import com.maddyhome.idea.vim.common.Mark;
 import org.jetbrains.plugins.ideavim.VimTestCase;
 
+import java.util.List;
+
 import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
 
 /**
@@ -103,6 +106,18 @@ public class MarkTest extends VimTestCase {
     assertEquals(6, mark.getCol());
   }
 
+  // |CTRL-O|
+  public void testJumpsAreMovedUpWhenLinesAreDeletedAbove() {
+    typeTextInFile(parseKeys("G", "gg", "dd"), "foo\n" +
+                                               "bar\n" +
+                                               "ba<caret>z\n" +
+                                               "qux\n");
+    final List<Jump> jumps = VimPlugin.getMark().getJumps();
+    assertTrue(jumps.size() >= 2);
+    assertEquals(1, jumps.get(jumps.size() - 2).getLogicalLine());
+    assertEquals(2, jumps.get(jumps.size() - 1).getLogicalLine());
+  }
+
   // |m| |`|
   public void testMarkAndJumpToMark() {
     typeTextInFile(parseKeys("6l", "mZ", "G$", "`Z"), "    foo\n" +
@@ -0,0 +1,174 @@
+package org.jetbrains.plugins.ideavim.bookmarks;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentMarkupModel;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.ui.UIUtil;
+import com.xin.bookmarks.Bookmark;
+import com.xin.bookmarks.BookmarkManager;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.ideavim.VimTestCase;
+
+import java.util.List;
+
+public class BookmarkManagerTest extends VimTestCase {
+  @Override
+  protected void tearDown() throws Exception {
+    final BookmarkManager manager = getManager();
+    for (Bookmark bookmark : manager.getValidBookmarks()) {
+      manager.removeBookmark(bookmark);
+    }
+    super.tearDown();
+  }
+
+  public void testAddAndRemove() {
+    configureByText("one\ntwo\nthree\n");
+    final Document document = myFixture.getEditor().getDocument();
+    final BookmarkManager manager = getManager();
+    final Bookmark bookmark = manager.addTextBookmark(getFile(), 1, "two");
+    assertTrue(bookmark.isValid());
+    assertSame(bookmark, manager.findEditorBookmark(document, 1));
+    assertNull(manager.findEditorBookmark(document, 0));
+    assertEquals(1, manager.getValidBookmarks().size());
+
+    manager.removeBookmark(bookmark);
+    assertNull(manager.findEditorBookmark(document, 1));
+    assertEmpty(manager.getValidBookmarks());
+    // The document no longer holds the highlighter of the removed bookmark
+    assertFalse(bookmark.isValid());
+  }
+
+  public void testRelease() {
+    configureByText("one\ntwo\nthree\n");
+    final Bookmark bookmark = getManager().addTextBookmark(getFile(), 2, "three");
+    assertTrue(bookmark.isValid());
+    bookmark.release();
+    assertFalse(bookmark.isValid());
+    getManager().removeBookmark(bookmark);
+  }
+
+  public void testMnemonics() {
+    configureByText("one\ntwo\nthree\n");
+    final BookmarkManager manager = getManager();
+    final Bookmark first = manager.addTextBookmark(getFile(), 0, "one");
+    final Bookmark second = manager.addTextBookmark(getFile(), 1, "two");
+    assertFalse(manager.hasBookmarksWithMnemonics());
+
+    manager.setMnemonic(first, 'a');
+    assertTrue(manager.hasBookmarksWithMnemonics());
+    assertSame(first, manager.findBookmarkForMnemonic('A'));
+    assertSame(first, manager.findBookmarkForMnemonic('a'));
+
+    // A mnemonic belongs to one bookmark only
+    manager.setMnemonic(second, 'a');
+    assertSame(second, manager.findBookmarkForMnemonic('a'));
+    assertFalse(manager.getValidBookmarks().contains(first));
+
+    manager.removeBookmark(second);
+    assertNull(manager.findBookmarkForMnemonic('a'));
+    assertFalse(manager.hasBookmarksWithMnemonics());
+  }
+
+  public void testInvalidMnemonic() {
+    configureByText("one\ntwo\nthree\n");
+    final BookmarkManager manager = getManager();
+    final Bookmark bookmark = manager.addTextBookmark(getFile(), 0, "one");
+    manager.setMnemonic(bookmark, '%');
+    assertEquals(0, bookmark.getMnemonic());
+    assertFalse(manager.hasBookmarksWithMnemonics());
+  }
+
+  public void testLineShift() {
+    configureByText("one\ntwo\nthree\n");
+    final Document document = myFixture.getEditor().getDocument();
+    final BookmarkManager manager = getManager();
+    final Bookmark first = manager.addTextBookmark(getFile(), 0, "one");
+    final Bookmark last = manager.addTextBookmark(getFile(), 2, "three");
+
+    WriteCommandAction.runWriteCommandAction(myFixture.getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(document.getLineStartOffset(1), "one and a half\n");
+      }
+    });
+    assertEquals(0, first.getLine());
+    assertEquals(3, last.getLine());
+    assertSame(first, manager.findEditorBookmark(document, 0));
+    assertSame(last, manager.findEditorBookmark(document, 3));
+    assertNull(manager.findEditorBookmark(document, 2));
+  }
+
+  public void testSaveAndLoadKeepOrder() {
+    configureByText("one\ntwo\nthree\n");
+    final VirtualFile other = myFixture.addFileToProject("other.txt", "other\n").getVirtualFile();
+    final BookmarkManager manager = getManager();
+    manager.addTextBookmark(getFile(), 0, "first");
+    manager.addFileBookmark(other, "second");
+    manager.addTextBookmark(getFile(), 2, "third");
+
+    final Element state = manager.getState();
+    manager.loadState(state);
+    UIUtil.dispatchAllInvocationEvents();
+    assertEquals(JDOMUtil.writeElement(state), JDOMUtil.writeElement(manager.getState()));
+
+    final List<Bookmark> bookmarks = manager.getValidBookmarks();
+    assertEquals(3, bookmarks.size());
+    assertEquals("third", bookmarks.get(0).getDescription());
+    assertEquals("second", bookmarks.get(1).getDescription());
+    assertEquals("first", bookmarks.get(2).getDescription());
+    assertEquals(JDOMUtil.writeElement(state), JDOMUtil.writeElement(manager.getState()));
+  }
+
+  public void testPendingBookmarksOfCreatedDocument() throws Exception {
+    configureByText("one\n");
+    final VirtualFile other = myFixture.getTempDirFixture().createFile("pending.txt", "one\ntwo\nthree\n");
+    final Element state = new Element("BookmarkManager");
+    state.addContent(new Element("bookmark").setAttribute("url", other.getUrl()).setAttribute("line", "0"));
+    state.addContent(new Element("bookmark").setAttribute("url", other.getUrl()).setAttribute("line", "2"));
+    final BookmarkManager manager = getManager();
+    manager.loadState(state);
+    UIUtil.dispatchAllInvocationEvents();
+
+    assertNull(FileDocumentManager.getInstance().getCachedDocument(other));
+    final PsiFile psiFile = PsiManager.getInstance(myFixture.getProject()).findFile(other);
+    assertNotNull(psiFile);
+    final Document document = PsiDocumentManager.getInstance(myFixture.getProject()).getDocument(psiFile);
+    assertNotNull(document);
+    UIUtil.dispatchAllInvocationEvents();
+    assertEquals(2, countGutterHighlighters(document));
+
+    final Bookmark first = manager.findEditorBookmark(document, 0);
+    assertNotNull(first);
+    manager.removeBookmark(first);
+    assertNull(manager.findEditorBookmark(document, 0));
+    assertNotNull(manager.findEditorBookmark(document, 2));
+    assertEquals(1, countGutterHighlighters(document));
+  }
+
+  private int countGutterHighlighters(@NotNull Document document) {
+    int count = 0;
+    for (RangeHighlighter highlighter : DocumentMarkupModel.forDocument(document, myFixture.getProject(), true)
+      .getAllHighlighters()) {
+      if (highlighter.getGutterIconRenderer() != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private BookmarkManager getManager() {
+    return BookmarkManager.getInstance(myFixture.getProject());
+  }
+
+  private VirtualFile getFile() {
+    return myFixture.getFile().getVirtualFile();
+  }
+}
@@ -0,0 +1,39 @@
+package org.jetbrains.plugins.ideavim.ex;
+
+import com.intellij.openapi.util.SystemInfo;
+import org.jetbrains.plugins.ideavim.VimTestCase;
+
+public class FilterCommandTest extends VimTestCase {
+  // Bigger than the pipe buffers, a filter that writes its input before it reads the output blocks on it
+  private static final int LINES = 100000;
+
+  public void testCatLargeRange() {
+    if (SystemInfo.isWindows) return;
+    final String text = numberedLines(false);
+    configureByText(text);
+    typeText(commandToKeys("%!cat"));
+    myFixture.checkResult(text);
+  }
+
+  public void testSortLargeRange() {
+    if (SystemInfo.isWindows) return;
+    configureByText(numberedLines(true));
+    typeText(commandToKeys("%!sort"));
+    myFixture.checkResult(numberedLines(false));
+  }
+
+  public void testFilterPartOfFile() {
+    if (SystemInfo.isWindows) return;
+    configureByText("c\nb\na\nz\n");
+    typeText(commandToKeys("1,3!sort"));
+    myFixture.checkResult("a\nb\nc\nz\n");
+  }
+
+  private static String numberedLines(boolean reversed) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < LINES; i++) {
+      builder.append(String.format("line %06d", reversed ? LINES - 1 - i : i)).append('\n');
+    }
+    return builder.toString();
+  }
+}
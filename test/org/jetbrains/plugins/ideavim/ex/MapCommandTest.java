@@ -288,6 +288,14 @@ public class MapCommandTest extends VimTestCase {
     myFixture.checkResult("Hello\n");
   }
 
+  public void testMappingsWithCommonPrefix() {
+    configureByText("\n");
+    typeText(commandToKeys("nmap ,fa iHello<Esc>"));
+    typeText(commandToKeys("nmap ,fb iBye<Esc>"));
+    typeText(parseKeys(",fb"));
+    myFixture.checkResult("Bye\n");
+  }
+
   public void testPlugMapping() {
     configureByText("\n");
     typeText(commandToKeys("nmap ,f <Plug>Foo"));
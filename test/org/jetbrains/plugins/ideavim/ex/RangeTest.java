@@ -18,6 +18,14 @@ public class RangeTest extends VimTestCase {
     myFixture.checkResult("1\n2\n4\n5\n");
   }
 
+  public void testCurrentLineOfRepeatedCommand() {
+    myFixture.configureByText("a.txt", "1\n2\n<caret>3\n4\n5\n");
+    typeText(commandToKeys(".d"));
+    typeText(commandToKeys("1"));
+    typeText(commandToKeys(".d"));
+    myFixture.checkResult("2\n4\n5\n");
+  }
+
   public void testLastLine() {
     myFixture.configureByText("a.txt", "1\n2\n3\n4\n5\n");
     typeText(commandToKeys("$s/5/x/"));
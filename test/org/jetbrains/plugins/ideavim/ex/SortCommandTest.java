@@ -98,4 +98,34 @@ public class SortCommandTest extends VimTestCase {
     typeText(commandToKeys("sort"));
     myFixture.checkResult(" a\n b\n c\n whatever\n zee");
   }
+
+  public void testUniqueSort() {
+    myFixture.configureByText("a.txt", "b\na\nB\na\nb");
+    typeText(commandToKeys("sort u"));
+    myFixture.checkResult("B\na\nb");
+  }
+
+  public void testUniqueInsensitiveSort() {
+    myFixture.configureByText("a.txt", "b\na\nB\na\nb");
+    typeText(commandToKeys("sort ui"));
+    myFixture.checkResult("a\nb");
+  }
+
+  public void testHexSort() {
+    myFixture.configureByText("a.txt", "0x1F\n-0x2\nzzz\n0xA");
+    typeText(commandToKeys("sort x"));
+    myFixture.checkResult("zzz\n-0x2\n0xA\n0x1F");
+  }
+
+  public void testSortAfterPattern() {
+    myFixture.configureByText("a.txt", "a3 z\nb1 y\nc2 x");
+    typeText(commandToKeys("sort /\\a\\d/"));
+    myFixture.checkResult("c2 x\nb1 y\na3 z");
+  }
+
+  public void testSortOnPatternMatch() {
+    myFixture.configureByText("a.txt", "a3 z\nb1 y\nc2 x");
+    typeText(commandToKeys("sort /\\d/ r"));
+    myFixture.checkResult("b1 y\nc2 x\na3 z");
+  }
 }
@@ -104,6 +104,12 @@ public class SubstituteCommandTest extends VimTestCase {
            "aaa\nbbb\nbbb\nbbb\naaa\n");
   }
 
+  public void testLongerReplacementsWholeFileMovesCaretToLastMatch() {
+    doTest("%s/a/xyz/g",
+           "<caret>a a\nb\n  ba\nc\n",
+           "xyz xyz\nb\n  <caret>bxyz\nc\n");
+  }
+
   private void doTest(final String command, String before, String after) {
     myFixture.configureByText("a.java", before);
     typeText(commandToKeys(command));
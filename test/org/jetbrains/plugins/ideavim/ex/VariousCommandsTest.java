@@ -1,6 +1,7 @@
 package org.jetbrains.plugins.ideavim.ex;
 
 import com.maddyhome.idea.vim.command.CommandState;
+import com.maddyhome.idea.vim.ex.ExOutputModel;
 import org.jetbrains.plugins.ideavim.VimTestCase;
 
 import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
@@ -94,4 +95,36 @@ public class VariousCommandsTest extends VimTestCase {
                           "a/*bc*/de\n" +
                           "-----");
   }
+
+  // |:digraphs|
+  public void testUserDefinedDigraph() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraphs z9 8364 z8 163"));
+    typeText(parseKeys("i", "<C-K>z9", "<C-K>8z", "<Esc>"));
+    myFixture.checkResult("\u20ac<caret>\u00a3\n");
+  }
+
+  // |:digraphs|
+  public void testRedefinedDigraphListing() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraphs a: 9731"));
+    try {
+      typeText(commandToKeys("digraphs"));
+      final String listing = ExOutputModel.getInstance(myFixture.getEditor()).getText();
+      assertNotNull(listing);
+      assertTrue(listing.contains("a: \u2603  2603"));
+      assertFalse(listing.contains("a: \u00e4"));
+    }
+    finally {
+      typeText(commandToKeys("digraphs a: 228"));
+    }
+  }
+
+  // |:digraphs|
+  public void testDigraphCodeOutOfRange() {
+    configureByText("<caret>\n");
+    typeText(commandToKeys("digraphs z6 70000"));
+    typeText(parseKeys("i", "<C-K>z6", "<Esc>"));
+    myFixture.checkResult("<caret>6\n");
+  }
 }
@@ -1,7 +1,10 @@
 package org.jetbrains.plugins.ideavim.ex;
 
+import com.maddyhome.idea.vim.ex.vimscript.VimScriptParser;
 import org.jetbrains.plugins.ideavim.VimTestCase;
 
+import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
+
 /**
  * @author vlan
  */
@@ -18,4 +21,25 @@ public class VimScriptParserTest extends VimTestCase {
     typeText(commandToKeys("echo s"));
     assertExOutput("foo\n");
   }
+
+  public void testLinesWithSpacesAndWindowsLineBreaks() {
+    configureByText("\n");
+    VimScriptParser.executeText("let s = \"foo\"  \r\n   \r\n\r\n  let t = \"bar\"\r\n\tlet s = \"baz\"\r\n");
+    typeText(commandToKeys("echo s"));
+    assertExOutput("foo\n");
+    typeText(commandToKeys("echo t"));
+    assertExOutput("bar\n");
+  }
+
+  public void testDigraphsDefinedInScript() {
+    configureByText("<caret>\n");
+    VimScriptParser.executeText("digraphs o: 9731\n");
+    try {
+      typeText(parseKeys("i", "<C-K>o:", "<Esc>"));
+      myFixture.checkResult("<caret>\u2603\n");
+    }
+    finally {
+      VimScriptParser.executeText("digraphs o: 246\n");
+    }
+  }
 }
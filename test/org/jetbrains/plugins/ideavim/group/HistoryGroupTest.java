@@ -0,0 +1,88 @@
+package org.jetbrains.plugins.ideavim.group;
+
+import com.maddyhome.idea.vim.VimPlugin;
+import com.maddyhome.idea.vim.group.HistoryGroup;
+import com.maddyhome.idea.vim.helper.EditorDataContext;
+import com.maddyhome.idea.vim.option.NumberOption;
+import com.maddyhome.idea.vim.option.Options;
+import com.maddyhome.idea.vim.ui.ExEntryPanel;
+import com.maddyhome.idea.vim.ui.ExTextField;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.ideavim.VimTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HistoryGroupTest extends VimTestCase {
+  public void testRepeatedEntryMovesToTheEnd() {
+    final HistoryGroup history = new HistoryGroup();
+    history.addEntry(HistoryGroup.COMMAND, "one");
+    history.addEntry(HistoryGroup.COMMAND, "two");
+    history.addEntry(HistoryGroup.COMMAND, "one");
+    final List<HistoryGroup.HistoryEntry> entries = history.getEntries(HistoryGroup.COMMAND, 0, 0);
+    assertEquals(Arrays.asList("two", "one"), texts(entries));
+    assertTrue(entries.get(0).getNumber() < entries.get(1).getNumber());
+    assertEquals(Arrays.asList("one"), texts(history.getEntries(HistoryGroup.COMMAND, "o")));
+  }
+
+  public void testOldestEntryIsDroppedAtTheLimit() {
+    ((NumberOption)Options.getInstance().getOption("history")).set(3);
+    final HistoryGroup history = new HistoryGroup();
+    for (String text : Arrays.asList("e1", "e2", "e3", "e4")) {
+      history.addEntry(HistoryGroup.COMMAND, text);
+    }
+    assertEquals(Arrays.asList("e2", "e3", "e4"), texts(history.getEntries(HistoryGroup.COMMAND, 0, 0)));
+    assertEquals(Arrays.asList("e2", "e3", "e4"), texts(history.getEntries(HistoryGroup.COMMAND, "e")));
+  }
+
+  public void testPrefixEntriesFromOldestToNewest() {
+    final HistoryGroup history = new HistoryGroup();
+    for (String text : Arrays.asList("echo 1", "set hls", "echo 2", "ec", "echo 1")) {
+      history.addEntry(HistoryGroup.COMMAND, text);
+    }
+    assertEquals(Arrays.asList("echo 2", "echo 1"), texts(history.getEntries(HistoryGroup.COMMAND, "echo")));
+    assertEquals(Arrays.asList("echo 2", "ec", "echo 1"), texts(history.getEntries(HistoryGroup.COMMAND, "ec")));
+    assertEmpty(history.getEntries(HistoryGroup.COMMAND, "x"));
+  }
+
+  // |c_<Up>| |c_<Down>|
+  public void testFilteredRecallOrder() {
+    for (String text : Arrays.asList("filtered one", "unfiltered", "filtered two")) {
+      VimPlugin.getHistory().addEntry(HistoryGroup.COMMAND, text);
+    }
+    configureByText("\n");
+    final ExEntryPanel panel = ExEntryPanel.getInstance();
+    panel.activate(myFixture.getEditor(), new EditorDataContext(myFixture.getEditor()), ":", "filtered", 1);
+    final ExTextField entry = panel.getEntry();
+    VimPlugin.clearError();
+
+    entry.selectHistory(true, true);
+    assertEquals("filtered two", entry.getText());
+    entry.selectHistory(true, true);
+    assertEquals("filtered one", entry.getText());
+    assertPluginError(false);
+    entry.selectHistory(true, true);
+    assertEquals("filtered one", entry.getText());
+    assertPluginError(true);
+
+    VimPlugin.clearError();
+    entry.selectHistory(false, true);
+    assertEquals("filtered two", entry.getText());
+    entry.selectHistory(false, true);
+    assertEquals("filtered", entry.getText());
+    assertPluginError(false);
+    entry.selectHistory(false, true);
+    assertEquals("filtered", entry.getText());
+    assertPluginError(true);
+  }
+
+  @NotNull
+  private static List<String> texts(@NotNull List<HistoryGroup.HistoryEntry> entries) {
+    final List<String> res = new ArrayList<String>();
+    for (HistoryGroup.HistoryEntry entry : entries) {
+      res.add(entry.getEntry());
+    }
+    return res;
+  }
+}
@@ -1,17 +1,32 @@
 package org.jetbrains.plugins.ideavim.group;
 
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Ref;
+import com.intellij.util.TimeoutUtil;
+import com.intellij.util.ui.UIUtil;
 import com.maddyhome.idea.vim.VimPlugin;
 import com.maddyhome.idea.vim.command.Command;
+import com.maddyhome.idea.vim.common.TextRange;
 import com.maddyhome.idea.vim.group.SearchGroup;
+import com.maddyhome.idea.vim.helper.EditorData;
 import com.maddyhome.idea.vim.helper.RunnableHelper;
 import com.maddyhome.idea.vim.option.Option;
 import com.maddyhome.idea.vim.option.Options;
 import com.maddyhome.idea.vim.option.ToggleOption;
+import com.maddyhome.idea.vim.regexp.RegExp;
+import com.maddyhome.idea.vim.regexp.RegExpCache;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.ideavim.VimTestCase;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
 
 /**
@@ -102,13 +117,179 @@ public class SearchGroupTest extends VimTestCase {
     assertOffset(4);
   }
 
+  // |/|
+  public void testSearchWrapsAroundToLiteralOnEarlierLine() {
+    typeTextInFile(parseKeys("/", "one", "<Enter>"),
+                   "one\n" +
+                   "two\n" +
+                   "<caret>three\n");
+    assertOffset(0);
+  }
+
+  // |?|
+  public void testSearchBackwardsSkipsLinesWithoutLiteral() {
+    typeTextInFile(parseKeys("?", "one", "<Enter>"),
+                   "one\n" +
+                   "two\n" +
+                   "three\n" +
+                   "four <caret>one\n");
+    assertOffset(0);
+  }
+
+  // |/|
+  public void testSearchWithNestedAlternativesIsNotExponential() {
+    typeTextInFile(parseKeys("/", "\\(a\\|aa\\)\\+b", "<Enter>"),
+                   "<caret>aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaac b\n" +
+                   "aab\n");
+    assertOffset(44);
+  }
+
   // |i_CTRL-K|
   public void testSearchDigraph() {
     typeTextInFile(parseKeys("/", "<C-K>O:", "<Enter>"),
                    "<caret>Hello, Österreich!\n");
     assertOffset(7);
   }
-  
+
+  // |/|
+  public void testRepeatedSearchReusesCompiledPattern() {
+    final RegExpCache cache = RegExpCache.getInstance();
+    cache.clear();
+    assertEquals(5, search("two",
+                           "<caret>one\n" +
+                           "two\n"));
+    assertEquals(5, search("two",
+                           "<caret>one\n" +
+                           "two\n"));
+    assertEquals(1, cache.getMisses());
+    assertTrue(cache.getHits() > 0);
+  }
+
+  public void testCachedPatternRestoresCompileState() {
+    final RegExpCache cache = RegExpCache.getInstance();
+    cache.clear();
+    assertNotNull(cache.vim_regcomp(new RegExp(), "foo$", 1));
+    final RegExp regExp = new RegExp();
+    assertNotNull(cache.vim_regcomp(regExp, "foo$", 1));
+    assertEquals(1, cache.getHits());
+    assertTrue(regExp.vim_regcomp_had_eol());
+    assertNotNull(cache.vim_regcomp(regExp, "foo", 1));
+    assertFalse(regExp.vim_regcomp_had_eol());
+  }
+
+  public void testFindNextWrapsAroundInBothDirections() {
+    myFixture.configureByText("a.java", "one two\none two\n");
+    final Editor editor = myFixture.getEditor();
+    final TextRange forwards = SearchGroup.findNext(editor, "one", 9, false, true);
+    assertNotNull(forwards);
+    assertEquals(0, forwards.getStartOffset());
+    assertEquals(3, forwards.getEndOffset());
+    final TextRange backwards = SearchGroup.findNext(editor, "two", 2, false, false);
+    assertNotNull(backwards);
+    assertEquals(12, backwards.getStartOffset());
+    assertNull(SearchGroup.findNext(editor, "three", 0, false, true));
+  }
+
+  public void testFindNextIncrementallyAgreesWithFindNext() {
+    myFixture.configureByText("a.java", "foo\nbar fob\nfoo fob foobar\nfo\n");
+    final Editor editor = myFixture.getEditor();
+    final String[] patterns = {"f", "fo", "foo", "foob", "fooba", "foobaz"};
+    for (int offset = 0; offset < editor.getDocument().getTextLength(); offset++) {
+      String previousPattern = null;
+      TextRange previousMatch = null;
+      for (String pattern : patterns) {
+        final TextRange expected = SearchGroup.findNext(editor, pattern, offset, false, true);
+        final TextRange actual = SearchGroup.findNextIncrementally(editor, pattern, offset, false, true,
+                                                                   previousPattern, previousMatch);
+        assertEquals(pattern + " at " + offset, expected == null ? null : expected.getStartOffset(),
+                     actual == null ? null : actual.getStartOffset());
+        previousPattern = pattern;
+        previousMatch = actual;
+      }
+    }
+  }
+
+  // |'hlsearch'|
+  public void testHighlightSearchInBackground() {
+    setHighlightSearch();
+    final StringBuilder text = new StringBuilder("<caret>");
+    for (int i = 0; i < 50; i++) {
+      text.append("line ").append(i).append(" foo bar foo\n");
+    }
+    assertTrue(search("foo", text.toString()) > 0);
+    final Editor editor = myFixture.getEditor();
+    // The visible lines are highlighted right away, the rest of the file later
+    assertTrue(getSearchHighlights(editor).contains(range(7, 10)));
+
+    waitForSearchHighlight(editor);
+    assertSearchHighlights(editor, "foo");
+  }
+
+  // |'hlsearch'|
+  public void testHighlightSearchRestartsAfterChange() {
+    setHighlightSearch();
+    final StringBuilder text = new StringBuilder("<caret>");
+    for (int i = 0; i < 50; i++) {
+      text.append("line ").append(i).append(" foo bar foo\n");
+    }
+    assertTrue(search("foo", text.toString()) > 0);
+    final Editor editor = myFixture.getEditor();
+    final Document document = editor.getDocument();
+    // The background search either gets cancelled by the change or finds a modification stamp that is out of date
+    WriteCommandAction.runWriteCommandAction(myFixture.getProject(), new Runnable() {
+      @Override
+      public void run() {
+        document.insertString(document.getLineStartOffset(20), "foo foo\n");
+        document.deleteString(document.getLineStartOffset(40), document.getLineStartOffset(41));
+      }
+    });
+
+    waitForSearchHighlight(editor);
+    assertSearchHighlights(editor, "foo");
+  }
+
+  private void waitForSearchHighlight(@NotNull Editor editor) {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (EditorData.getHighlightProgress(editor) != null) {
+      assertTrue("Search highlighting didn't finish", System.currentTimeMillis() < deadline);
+      UIUtil.dispatchAllInvocationEvents();
+      TimeoutUtil.sleep(10);
+    }
+    UIUtil.dispatchAllInvocationEvents();
+  }
+
+  /**
+   * Checks that every match of the literal text has exactly one highlighter in the editor.
+   */
+  private static void assertSearchHighlights(@NotNull Editor editor, @NotNull String literal) {
+    final String text = editor.getDocument().getText();
+    final List<String> expected = new ArrayList<String>();
+    for (int i = text.indexOf(literal); i >= 0; i = text.indexOf(literal, i + literal.length())) {
+      expected.add(range(i, i + literal.length()));
+    }
+    final List<String> actual = getSearchHighlights(editor);
+    Collections.sort(actual);
+    assertEquals(expected, actual);
+    assertEquals(expected.size(), EditorData.getLastHighlights(editor).size());
+  }
+
+  @NotNull
+  private static List<String> getSearchHighlights(@NotNull Editor editor) {
+    final List<String> ranges = new ArrayList<String>();
+    for (RangeHighlighter highlighter : editor.getMarkupModel().getAllHighlighters()) {
+      if (highlighter.isValid() && highlighter.getLayer() == HighlighterLayer.ADDITIONAL_SYNTAX + 1) {
+        ranges.add(range(highlighter.getStartOffset(), highlighter.getEndOffset()));
+      }
+    }
+    return ranges;
+  }
+
+  // Zero padded, so the ranges sort by offset as strings
+  @NotNull
+  private static String range(int start, int end) {
+    return String.format("%06d-%06d", start, end);
+  }
+
   private void setHighlightSearch() {
     final Options options = Options.getInstance();
     options.resetAllOptions();
@@ -1,8 +1,11 @@
 package org.jetbrains.plugins.ideavim.helper;
 
+import com.intellij.openapi.editor.Editor;
 import com.maddyhome.idea.vim.helper.SearchHelper;
 import org.jetbrains.plugins.ideavim.VimTestCase;
 
+import static com.maddyhome.idea.vim.helper.StringHelper.parseKeys;
+
 public class SearchHelperTest extends VimTestCase {
   public void testFindNextWord() {
     String text = "first second";
@@ -52,4 +55,18 @@ public class SearchHelperTest extends VimTestCase {
 
     assertEquals(previousWordPosition, text.indexOf("second"));
   }
+
+  public void testCountWordsIsUpdatedAfterChange() {
+    final Editor editor = configureByText("one two\n" +
+                                          "three <caret>four\n" +
+                                          "five\n");
+    SearchHelper.CountPosition cp = SearchHelper.countWords(editor);
+    assertEquals(6, cp.getCount());
+    assertEquals(4, cp.getPosition());
+
+    typeText(parseKeys("ggizero <Esc>", "Go", "six seven<Esc>"));
+    cp = SearchHelper.countWords(editor);
+    assertEquals(9, cp.getCount());
+    assertEquals(8, cp.getPosition());
+  }
 }
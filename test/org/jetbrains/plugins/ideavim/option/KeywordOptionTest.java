@@ -116,6 +116,13 @@ public class KeywordOptionTest extends VimTestCase {
     assertIsNotKeyword('c');
   }
 
+  public void testRemovedValueIsNoLongerAKeyword() throws ExException {
+    setKeyword("=a,b");
+    setKeyword("-=b");
+    assertIsKeyword('a');
+    assertIsNotKeyword('b');
+  }
+
   public void testCaretAloneRepresentsACaret() throws ExException {
     setKeyword("=^");
     assertIsKeyword('^');